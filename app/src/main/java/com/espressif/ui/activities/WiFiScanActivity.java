@@ -38,7 +38,7 @@ import com.espressif.provisioning.DeviceConnectionEvent;
 import com.espressif.provisioning.ESPConstants;
 import com.espressif.provisioning.ESPProvisionManager;
 import com.espressif.provisioning.WiFiAccessPoint;
-import com.espressif.provisioning.listeners.WiFiScanListener;
+import com.espressif.provisioning.listeners.WiFiScanPageListener;
 import com.espressif.ui.adapters.WiFiListAdapter;
 import com.espressif.ui.models.WiFiCredentials;
 import com.espressif.wifi_provisioning.R;
@@ -150,12 +150,28 @@ public class WiFiScanActivity extends AppCompatActivity {
 
         handler.postDelayed(stopScanningTask, 15000);
 
-        provisionManager.getEspDevice().scanNetworks(new WiFiScanListener() {
+        provisionManager.getEspDevice().scanNetworks(new WiFiScanPageListener() {
+
+            @Override
+            public void onWifiListPageReceived(final ArrayList<WiFiAccessPoint> wifiList, int resultCount, int totalCount) {
+
+                // Show networks of each page right away, while next pages are being received.
+                runOnUiThread(() -> {
+                    for (WiFiAccessPoint wifiAp : wifiList) {
+                        if (!wifiAPList.contains(wifiAp)) {
+                            wifiAPList.add(wifiAp);
+                        }
+                    }
+                    wifiListView.setVisibility(View.VISIBLE);
+                    adapter.notifyDataSetChanged();
+                });
+            }
 
             @Override
             public void onWifiListReceived(final ArrayList<WiFiAccessPoint> wifiList) {
 
                 runOnUiThread(() -> {
+                    wifiAPList.clear();
                     wifiAPList.addAll(wifiList);
                     completeWifiList();
                 });
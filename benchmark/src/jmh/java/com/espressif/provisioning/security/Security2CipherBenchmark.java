@@ -0,0 +1,129 @@
+package com.espressif.provisioning.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-message cost of Security 2 encryption and decryption, with key and cipher objects created for every
+ * message (previous implementation) and with cipher contexts created once per session.
+ * JVM providers reject repeated GCM encryption with the same key and nonce, which Security 2 protocol uses
+ * for all messages of a session, so encrypt benchmarks use a fresh nonce for every invocation.
+ * They init a Cipher with the cached key as {@link AesGcmSessionCipher#encrypt} does, and create the
+ * parameter spec of the fresh nonce in both variants.
+ */
+@State(Scope.Thread)
+public class Security2CipherBenchmark {
+
+    @Param({"64", "512"})
+    public int messageSize;
+
+    private byte[] key;
+    private byte[] nonce;
+    private byte[] cipherText;
+    private byte[] message;
+    private byte[] encryptNonce;
+    private int nonceCounter;
+    private Cipher sharedCipher;
+    private Cipher encryptCipher;
+    private SecretKeySpec keySpec;
+    private AesGcmSessionCipher sessionCipher;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+    private ByteBuffer plainSrc;
+    private ByteBuffer cipherDst;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        Random random = new Random(1);
+        key = new byte[32];
+        nonce = new byte[12];
+        message = new byte[messageSize];
+        random.nextBytes(key);
+        random.nextBytes(nonce);
+        random.nextBytes(message);
+
+        cipherText = new AesGcmSessionCipher(key, nonce).encrypt(message);
+        sharedCipher = Cipher.getInstance(AesGcmSessionCipher.TRANSFORMATION);
+        sessionCipher = new AesGcmSessionCipher(key, nonce);
+        src = ByteBuffer.wrap(cipherText);
+        dst = ByteBuffer.allocate(messageSize);
+
+        encryptNonce = nonce.clone();
+        encryptCipher = Cipher.getInstance(AesGcmSessionCipher.TRANSFORMATION);
+        keySpec = new SecretKeySpec(key, "AES");
+        plainSrc = ByteBuffer.wrap(message);
+        cipherDst = ByteBuffer.allocate(messageSize + AesGcmSessionCipher.TAG_LENGTH);
+    }
+
+    /**
+     * Nonce which differs from the one of the previous invocation.
+     */
+    private GCMParameterSpec nextParameterSpec() {
+
+        nonceCounter++;
+        encryptNonce[8] = (byte) (nonceCounter >>> 24);
+        encryptNonce[9] = (byte) (nonceCounter >>> 16);
+        encryptNonce[10] = (byte) (nonceCounter >>> 8);
+        encryptNonce[11] = (byte) nonceCounter;
+        return new GCMParameterSpec(AesGcmSessionCipher.TAG_LENGTH * 8, encryptNonce);
+    }
+
+    @Benchmark
+    public byte[] encryptWithInitPerMessage() throws Exception {
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
+        sharedCipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, nextParameterSpec());
+        return sharedCipher.doFinal(message);
+    }
+
+    @Benchmark
+    public byte[] encryptWithSessionCipher() throws Exception {
+
+        encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, nextParameterSpec());
+        return encryptCipher.doFinal(message);
+    }
+
+    @Benchmark
+    public ByteBuffer encryptIntoBuffer() throws Exception {
+
+        plainSrc.rewind();
+        cipherDst.clear();
+        encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, nextParameterSpec());
+        encryptCipher.doFinal(plainSrc, cipherDst);
+        return cipherDst;
+    }
+
+    @Benchmark
+    public byte[] decryptWithInitPerMessage() throws Exception {
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
+        GCMParameterSpec parameterSpec = new GCMParameterSpec(AesGcmSessionCipher.TAG_LENGTH * 8, nonce);
+        sharedCipher.init(Cipher.DECRYPT_MODE, secretKeySpec, parameterSpec);
+        return sharedCipher.doFinal(cipherText);
+    }
+
+    @Benchmark
+    public byte[] decryptWithSessionCipher() throws Exception {
+        return sessionCipher.decrypt(cipherText);
+    }
+
+    @Benchmark
+    public ByteBuffer decryptIntoBuffer() throws Exception {
+
+        src.rewind();
+        dst.clear();
+        sessionCipher.decrypt(src, dst);
+        return dst;
+    }
+}
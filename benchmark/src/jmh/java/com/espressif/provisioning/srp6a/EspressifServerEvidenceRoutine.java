@@ -0,0 +1,22 @@
+package com.espressif.provisioning.srp6a;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+/**
+ * Server evidence routine matching the client session, which computes M2 = H(A | M1 | K) with
+ * shared session key K = H(S) as Espressif devices do. Lets SRP6ServerSession act as device
+ * in benchmarks.
+ */
+class EspressifServerEvidenceRoutine implements ServerEvidenceRoutine {
+
+    private final SRP6Routines routines = new SRP6Routines();
+
+    @Override
+    public BigInteger computeServerEvidence(SRP6CryptoParams cryptoParams, SRP6ServerEvidenceContext ctx) {
+
+        MessageDigest digest = cryptoParams.getMessageDigestInstance();
+        BigInteger K = routines.computeSharedSessionKey(digest, ctx.S);
+        return routines.computeServerEvidence(digest, ctx.A, ctx.M1, K);
+    }
+}
@@ -0,0 +1,72 @@
+package com.espressif.provisioning.srp6a;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete Security 2 handshake, client steps 1 to 3 with SRP6ServerSession as device.
+ * Server side computations are included, see SRP6RoutinesBenchmark for the client operations alone.
+ * With parallelStep2, client computes 'x' and g^x of step 2 on the shared worker thread.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class SRP6HandshakeBenchmark {
+
+    static final String USER_NAME = "wifiprov";
+    static final String PASSWORD = "abcd1234";
+    static final String HASH = "SHA-512";
+
+    @Param({"256", "512", "768", "1024", "1536", "2048", "3072", "4096", "6144", "8192"})
+    public int bitSize;
+
+    @Param({"false", "true"})
+    public boolean parallelStep2;
+
+    private SRP6CryptoParams config;
+    private byte[] salt;
+    private BigInteger s;
+    private BigInteger v;
+
+    @Setup
+    public void setUp() {
+
+        config = SRP6CryptoParams.getInstance(bitSize, HASH);
+        SRP6VerifierGenerator generator = new SRP6VerifierGenerator(config);
+        generator.setXRoutine(new XRoutineWithUserIdentity());
+        salt = generator.generateRandomSalt(16);
+        s = BigIntegerUtils.bigIntegerFromBytes(salt);
+        v = generator.generateVerifier(s, USER_NAME, PASSWORD);
+    }
+
+    @Benchmark
+    public SRP6ClientSession handshake() throws SRP6Exception {
+
+        SRP6ClientSession client = new SRP6ClientSession();
+        if (parallelStep2) {
+            client.setComputeExecutor(SRP6ClientSession.getDefaultComputeExecutor());
+        }
+        client.step1(USER_NAME, PASSWORD);
+        client.getClientPublicKey(config);
+
+        SRP6ServerSession server = new SRP6ServerSession(config);
+        server.setClientEvidenceRoutine(new ClientSRP6Routines(config.getMessageDigestInstance()));
+        server.setServerEvidenceRoutine(new EspressifServerEvidenceRoutine());
+        BigInteger B = server.step1(USER_NAME, s, v);
+
+        SRP6ClientCredentials credentials = client.step2_for_client_evidence(config, s, B, salt);
+        BigInteger M2 = server.step2(credentials.A, credentials.M1);
+        client.step3(M2);
+        return client;
+    }
+}
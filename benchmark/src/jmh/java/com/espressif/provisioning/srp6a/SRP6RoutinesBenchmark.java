@@ -0,0 +1,111 @@
+package com.espressif.provisioning.srp6a;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side SRP6Routines operations of the Security 2 handshake. Input values are taken from a
+ * handshake with SRP6ServerSession done once per trial.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class SRP6RoutinesBenchmark {
+
+    @Param({"256", "512", "768", "1024", "1536", "2048", "3072", "4096", "6144", "8192"})
+    public int bitSize;
+
+    private final SRP6Routines routines = new SRP6Routines();
+
+    private SRP6CryptoParams config;
+    private MessageDigest digest;
+    private ClientSRP6Routines clientEvidenceRoutine;
+    private byte[] salt;
+    private byte[] password;
+    private BigInteger s;
+    private BigInteger x;
+    private BigInteger a;
+    private BigInteger A;
+    private BigInteger B;
+    private BigInteger u;
+    private BigInteger S;
+    private BigInteger K;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        config = SRP6CryptoParams.getInstance(bitSize, SRP6HandshakeBenchmark.HASH);
+        digest = MessageDigest.getInstance(SRP6HandshakeBenchmark.HASH);
+        clientEvidenceRoutine = new ClientSRP6Routines(MessageDigest.getInstance(SRP6HandshakeBenchmark.HASH));
+        password = SRP6HandshakeBenchmark.PASSWORD.getBytes(Charset.forName("UTF-8"));
+
+        SRP6VerifierGenerator generator = new SRP6VerifierGenerator(config);
+        salt = generator.generateRandomSalt(16);
+        s = BigIntegerUtils.bigIntegerFromBytes(salt);
+        BigInteger v = generator.generateVerifier(salt, password);
+
+        SRP6ServerSession server = new SRP6ServerSession(config);
+        B = server.step1(SRP6HandshakeBenchmark.USER_NAME, s, v);
+
+        x = routines.computeX(digest, salt, password);
+        a = routines.generatePrivateValue(config.N, new SecureRandom());
+        A = routines.computePublicClientValue(config.N, config.g, a);
+        u = routines.computeU(digest, config.N, A, B);
+        S = routines.computeSessionKey(config.N, config.g, config.getK(), x, u, a, B);
+        K = routines.computeSharedSessionKey(digest, S);
+    }
+
+    @Benchmark
+    public BigInteger computeX() {
+        return routines.computeX(digest, salt, password);
+    }
+
+    @Benchmark
+    public BigInteger computeK() {
+        return routines.computeK(digest, config.N, config.g);
+    }
+
+    @Benchmark
+    public BigInteger computeU() {
+        return routines.computeU(digest, config.N, A, B);
+    }
+
+    @Benchmark
+    public BigInteger computePublicClientValue() {
+        return routines.computePublicClientValue(config.N, config.g, a);
+    }
+
+    @Benchmark
+    public BigInteger computeSessionKey() {
+        return routines.computeSessionKey(config.N, config.g, config.getK(), x, u, a, B);
+    }
+
+    @Benchmark
+    public BigInteger computeSharedSessionKey() {
+        return routines.computeSharedSessionKey(digest, S);
+    }
+
+    @Benchmark
+    public BigInteger computeClientEvidence() {
+        return routines.computeClientEvidence(digest, A, B, S);
+    }
+
+    @Benchmark
+    public BigInteger computeEspressifClientEvidence() {
+        SRP6ClientEvidenceContext ctx = new SRP6ClientEvidenceContext(SRP6HandshakeBenchmark.USER_NAME, s, A, B, K);
+        return clientEvidenceRoutine.computeClientEvidence(config, ctx);
+    }
+}
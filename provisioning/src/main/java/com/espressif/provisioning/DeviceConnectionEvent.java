@@ -22,16 +22,34 @@ import android.os.Bundle;
 public class DeviceConnectionEvent {
 
     private short eventType;
+    private String deviceAddress;
     private Bundle data;
 
     public DeviceConnectionEvent(short type) {
         eventType = type;
     }
 
+    /**
+     * @param type          Event type.
+     * @param deviceAddress Address of the device which this event belongs to.
+     */
+    public DeviceConnectionEvent(short type, String deviceAddress) {
+        eventType = type;
+        this.deviceAddress = deviceAddress;
+    }
+
     public short getEventType() {
         return eventType;
     }
 
+    /**
+     * @return Bluetooth address of the device which this event belongs to,
+     * or null if it is not known (e.g. for Wi-Fi devices).
+     */
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
     public Bundle getData() {
         return data;
     }
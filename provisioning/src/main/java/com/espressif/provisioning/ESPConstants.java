@@ -32,6 +32,18 @@ public class ESPConstants {
         SECURITY_2
     }
 
+    /**
+     * Connection parameters of BLE link.
+     * HANDSHAKE_FAST : High connection priority and 2M PHY, for bursts of exchanges like session establishment and Wi-Fi scan.
+     * BALANCED : Default connection parameters.
+     * IDLE_LOW_POWER : Low power connection priority and 1M PHY, while device is idle.
+     */
+    public enum BleLinkProfile {
+        HANDSHAKE_FAST,
+        BALANCED,
+        IDLE_LOW_POWER
+    }
+
     public enum ProvisionFailureReason {
         AUTH_FAILED,
         NETWORK_NOT_FOUND,
@@ -45,6 +57,11 @@ public class ESPConstants {
     public static final String HANDLER_PROV_SESSION = "prov-session";
     public static final String HANDLER_PROV_CONFIG = "prov-config";
 
+    // Device capabilities
+    // Device echoes 2 byte message id of request in response, see MultiplexTransport.
+    // Client side protocol extension, advertised only by firmware which implements the matching framing.
+    public static final String CAPABILITY_MULTIPLEXING = "mux";
+
     // Event types
     public static final short EVENT_DEVICE_CONNECTED = 1;
     public static final short EVENT_DEVICE_CONNECTION_FAILED = 2;
@@ -31,6 +31,7 @@ import android.net.wifi.WifiNetworkSpecifier;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -38,13 +39,21 @@ import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 
 import com.espressif.provisioning.listeners.ProvisionListener;
+import com.espressif.provisioning.listeners.ResponseBufferListener;
 import com.espressif.provisioning.listeners.ResponseListener;
 import com.espressif.provisioning.listeners.WiFiScanListener;
+import com.espressif.provisioning.listeners.WiFiScanPageListener;
 import com.espressif.provisioning.security.Security;
 import com.espressif.provisioning.security.Security0;
 import com.espressif.provisioning.security.Security1;
 import com.espressif.provisioning.security.Security2;
+import com.espressif.provisioning.security.X25519KeyPool;
+import com.espressif.provisioning.srp6a.FixedBaseModPow;
+import com.espressif.provisioning.srp6a.SRP6ClientSession;
+import com.espressif.provisioning.srp6a.SRP6CryptoParams;
 import com.espressif.provisioning.transport.BLETransport;
+import com.espressif.provisioning.transport.MultiplexTransport;
+import com.espressif.provisioning.transport.SoftAPNioTransport;
 import com.espressif.provisioning.transport.SoftAPTransport;
 import com.espressif.provisioning.transport.Transport;
 import com.espressif.provisioning.utils.MessengeHelper;
@@ -55,6 +64,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -73,6 +83,8 @@ public class ESPDevice {
 
     private static final String TAG = "ESP:" + ESPDevice.class.getSimpleName();
 
+    public static final long DEFAULT_SESSION_TTL_MS = 5 * 60 * 1000;
+
     private Context context;
     private Handler handler;
 
@@ -102,6 +114,11 @@ public class ESPDevice {
     private WifiManager wifiManager;
     private ConnectivityManager connectivityManager;
     private ConnectivityManager.NetworkCallback networkCallback;
+    private int fastBleLinkRequestCount;
+    private long sessionTtlMs = DEFAULT_SESSION_TTL_MS;
+    private long sessionLastUsedAt;
+    private int sessionConnectionGeneration;
+    private SRP6ClientSession preparedSrpSession;
 
     public ESPDevice(Context context, ESPConstants.TransportType transportType, ESPConstants.SecurityType securityType) {
 
@@ -122,6 +139,15 @@ public class ESPDevice {
                 transport = new SoftAPTransport();
                 break;
         }
+
+        // Security 1 key pair is generated while connecting, older firmware may fall back to Security 1 from Security 2.
+        if (securityType != ESPConstants.SecurityType.SECURITY_0) {
+            X25519KeyPool.getInstance().warmUp();
+        }
+        if (securityType == ESPConstants.SecurityType.SECURITY_2) {
+            FixedBaseModPow.precomputeGroup3072InBackground();
+            prepareSrpSession();
+        }
     }
 
     /**
@@ -130,6 +156,7 @@ public class ESPDevice {
     @RequiresPermission(allOf = {Manifest.permission.CHANGE_WIFI_STATE, Manifest.permission.ACCESS_WIFI_STATE, Manifest.permission.ACCESS_NETWORK_STATE, Manifest.permission.ACCESS_FINE_LOCATION})
     public void connectToDevice() {
 
+        invalidateSession();
         switch (transportType) {
 
             case TRANSPORT_BLE:
@@ -152,6 +179,7 @@ public class ESPDevice {
     @RequiresPermission(Manifest.permission.BLUETOOTH)
     public void connectBLEDevice(BluetoothDevice bluetoothDevice, String primaryServiceUuid) {
 
+        invalidateSession();
         if (transport instanceof BLETransport) {
             deviceName = bluetoothDevice.getName();
             ((BLETransport) transport).connect(bluetoothDevice, UUID.fromString(primaryServiceUuid));
@@ -167,9 +195,13 @@ public class ESPDevice {
     @RequiresPermission(Manifest.permission.ACCESS_NETWORK_STATE)
     public void connectWiFiDevice() {
 
-        if (transport instanceof SoftAPTransport) {
+        invalidateSession();
+        if (isSoftAPTransport()) {
 
-            enableOnlyWifiNetwork();
+            // Transport bound to a network does not need the whole process to be bound to Wi-Fi.
+            if (getSoftAPNetwork() == null) {
+                enableOnlyWifiNetwork();
+            }
             deviceConnectionReqCount = 0;
             getCapabilitiesFromDevice();
 
@@ -189,6 +221,7 @@ public class ESPDevice {
     public void connectWiFiDevice(String ssid, String password) {
 
         Log.d(TAG, "connectWiFiDevice ========== SSID : " + ssid + " and Password : " + password);
+        invalidateSession();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
 
@@ -317,11 +350,180 @@ public class ESPDevice {
 
         if (transport instanceof BLETransport) {
             ((BLETransport) transport).disconnect();
+            synchronized (this) {
+                fastBleLinkRequestCount = 0;
+            }
+        } else if (transport instanceof SoftAPTransport) {
+            ((SoftAPTransport) transport).disconnect();
+            ((SoftAPTransport) transport).clearSession();
+        } else if (transport instanceof SoftAPNioTransport) {
+            // Closed transport can not be used again, next connection gets a new one.
+            SoftAPNioTransport oldTransport = (SoftAPNioTransport) transport;
+            oldTransport.close();
+            oldTransport.clearSession();
+            transport = new SoftAPNioTransport(oldTransport.getNetwork(), oldTransport.getBaseUrl(),
+                    oldTransport.getMaxPipelinedRequests());
         }
-        session = null;
+        invalidateSession();
         disableOnlyWifiNetwork();
     }
 
+    /**
+     * This method is used to enable / disable keep-alive mode of SoftAP transport.
+     * In keep-alive mode, one HTTP connection is reused for all requests sent to the device.
+     * Note : It is applicable only for SoftAP transport.
+     *
+     * @param isEnabled true to enable keep-alive mode.
+     */
+    public void setSoftAPKeepAliveEnabled(boolean isEnabled) {
+
+        if (transport instanceof SoftAPTransport) {
+            ((SoftAPTransport) transport).setKeepAliveEnabled(isEnabled);
+        } else if (transport instanceof SoftAPNioTransport) {
+            Log.e(TAG, "Pipelining transport always uses one persistent connection.");
+        } else {
+            Log.e(TAG, "Keep-alive mode is supported only for SoftAP transport.");
+        }
+    }
+
+    /**
+     * This method is used to enable / disable notification mode of BLE transport.
+     * In notification mode, device response is received in a notification instead of being read,
+     * if the firmware supports notifications on its endpoints.
+     * Note : It is applicable only for BLE transport and should be called before connecting to the device.
+     *
+     * @param isEnabled true to enable notification mode.
+     */
+    public void setBleNotificationModeEnabled(boolean isEnabled) {
+
+        if (transport instanceof BLETransport) {
+            ((BLETransport) transport).setNotificationModeEnabled(isEnabled);
+        } else {
+            Log.e(TAG, "Notification mode is supported only for BLE transport.");
+        }
+    }
+
+    /**
+     * This method is used to bind SoftAP transport of this device to given network and device address.
+     * Devices bound to different networks or addresses use separate transports and worker threads,
+     * so they can be provisioned at the same time.
+     * Note : It is applicable only for SoftAP transport and should be called before connecting to the device.
+     *
+     * @param network Network on which device is reachable or null to use default network of the process.
+     * @param baseUrl Host address and port of the device, e.g. "192.168.4.1:80".
+     */
+    public void setSoftAPEndpoint(Network network, String baseUrl) {
+
+        if (transport instanceof SoftAPTransport) {
+            SoftAPTransport oldTransport = (SoftAPTransport) transport;
+            oldTransport.close();
+            transport = new SoftAPTransport(network, baseUrl, oldTransport.isKeepAliveEnabled());
+            invalidateSession();
+        } else if (transport instanceof SoftAPNioTransport) {
+            SoftAPNioTransport oldTransport = (SoftAPNioTransport) transport;
+            oldTransport.close();
+            transport = new SoftAPNioTransport(network, baseUrl, oldTransport.getMaxPipelinedRequests());
+            invalidateSession();
+        } else {
+            Log.e(TAG, "SoftAP endpoint can be set only for SoftAP transport.");
+        }
+    }
+
+    /**
+     * This method is used to enable / disable request pipelining of SoftAP transport.
+     * With pipelining, requests are sent on one persistent HTTP/1.1 connection without waiting for
+     * the responses of previous requests, e.g. for the pages of Wi-Fi scan results.
+     * Network and device address set with {@link #setSoftAPEndpoint(Network, String)} are kept.
+     * Note : It is applicable only for SoftAP transport and should be called before connecting to the device.
+     *
+     * @param isEnabled true to enable pipelining.
+     */
+    public void setSoftAPPipeliningEnabled(boolean isEnabled) {
+
+        if (isEnabled && transport instanceof SoftAPTransport) {
+            SoftAPTransport oldTransport = (SoftAPTransport) transport;
+            oldTransport.close();
+            transport = new SoftAPNioTransport(oldTransport.getNetwork(), oldTransport.getBaseUrl(),
+                    SoftAPNioTransport.DEFAULT_MAX_PIPELINED_REQUESTS);
+            invalidateSession();
+        } else if (!isEnabled && transport instanceof SoftAPNioTransport) {
+            SoftAPNioTransport oldTransport = (SoftAPNioTransport) transport;
+            oldTransport.close();
+            transport = new SoftAPTransport(oldTransport.getNetwork(), oldTransport.getBaseUrl());
+            invalidateSession();
+        } else if (!isSoftAPTransport()) {
+            Log.e(TAG, "Pipelining is supported only for SoftAP transport.");
+        }
+    }
+
+    /**
+     * This method is used to set time for which established session is kept after its last use.
+     * Scan, provision and custom endpoint requests sent within this time reuse the session instead of
+     * performing the handshake with the device again. Session is discarded when device is disconnected.
+     *
+     * @param ttlMs Time in milliseconds. 0 to establish new session for every operation.
+     */
+    public synchronized void setSessionTtl(long ttlMs) {
+        this.sessionTtlMs = Math.max(0, ttlMs);
+    }
+
+    /**
+     * This method is used to get time for which established session is kept after its last use.
+     *
+     * @return Returns time in milliseconds.
+     */
+    public synchronized long getSessionTtl() {
+        return sessionTtlMs;
+    }
+
+    /**
+     * This method is used to discard established session, next operation will perform the handshake again.
+     */
+    public synchronized void invalidateSession() {
+        session = null;
+        sessionLastUsedAt = 0;
+    }
+
+    /**
+     * Check whether established session can be reused and mark it as used.
+     */
+    private synchronized boolean hasValidSession() {
+
+        if (session == null || !session.isEstablished()) {
+            return false;
+        }
+
+        // Session belongs to the connection on which it was established, device has lost it after reconnecting.
+        if (transport instanceof BLETransport && (!((BLETransport) transport).isConnected()
+                || ((BLETransport) transport).getConnectionGeneration() != sessionConnectionGeneration)) {
+            Log.d(TAG, "Device disconnected, discard session");
+            invalidateSession();
+            return false;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - sessionLastUsedAt > sessionTtlMs) {
+            Log.d(TAG, "Session expired");
+            invalidateSession();
+            return false;
+        }
+        sessionLastUsedAt = now;
+        return true;
+    }
+
+    /**
+     * Called when an operation with the device has finished. Session is kept for next operation
+     * until its TTL expires.
+     */
+    private synchronized void releaseSession() {
+
+        if (sessionTtlMs == 0) {
+            invalidateSession();
+        } else {
+            sessionLastUsedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
     public void refreshServicesOfBleDevice() {
 
         if (transport instanceof BLETransport) {
@@ -335,6 +537,9 @@ public class ESPDevice {
      * @param pop Proof Of Possession of the device.
      */
     public void setProofOfPossession(String pop) {
+        if (!TextUtils.equals(proofOfPossession, pop)) {
+            invalidateSession();
+        }
         this.proofOfPossession = pop;
     }
 
@@ -353,6 +558,9 @@ public class ESPDevice {
      * @param username Username.
      */
     public void setUserName(String username) {
+        if (!TextUtils.equals(userName, username)) {
+            invalidateSession();
+        }
         this.userName = username;
     }
 
@@ -436,7 +644,13 @@ public class ESPDevice {
      * @return Returns security type.
      */
     public void setSecurityType(ESPConstants.SecurityType secType) {
+        if (securityType != secType) {
+            invalidateSession();
+        }
         securityType = secType;
+        if (secType == ESPConstants.SecurityType.SECURITY_2) {
+            prepareSrpSession();
+        }
     }
 
     /**
@@ -490,6 +704,7 @@ public class ESPDevice {
 
     /**
      * Send scan command to device to get available Wi-Fi access points.
+     * Pass {@link WiFiScanPageListener} to also get scan results page by page, as they are received.
      *
      * @param wifiScanListener WiFiScanListener to get callbacks of scanning networks.
      */
@@ -497,8 +712,9 @@ public class ESPDevice {
 
         Log.d(TAG, "Send Wi-Fi scan command to device");
         this.wifiScanListener = wifiScanListener;
+        requestFastBleLink();
 
-        if (session == null || !session.isEstablished()) {
+        if (!hasValidSession()) {
 
             initSession(new ResponseListener() {
 
@@ -510,9 +726,7 @@ public class ESPDevice {
                 @Override
                 public void onFailure(Exception e) {
                     e.printStackTrace();
-                    if (wifiScanListener != null) {
-                        wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to create session."));
-                    }
+                    notifyWiFiScanFailed(new RuntimeException("Failed to create session."));
                 }
             });
         } else {
@@ -531,7 +745,7 @@ public class ESPDevice {
 
         this.responseListener = listener;
 
-        if (session == null || !session.isEstablished()) {
+        if (!hasValidSession()) {
 
             initSession(new ResponseListener() {
 
@@ -564,7 +778,7 @@ public class ESPDevice {
 
         this.provisionListener = provisionListener;
 
-        if (session == null || !session.isEstablished()) {
+        if (!hasValidSession()) {
 
             initSession(new ResponseListener() {
 
@@ -587,6 +801,148 @@ public class ESPDevice {
         }
     }
 
+    /**
+     * Establish the session with the device asynchronously.
+     *
+     * @return Future which completes once the session is established.
+     */
+    public ESPFuture<Void> initSessionAsync() {
+
+        final ESPFuture<Void> future = new ESPFuture<>();
+        initSession(new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                future.complete(null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Asynchronous version of {@link #scanNetworks(WiFiScanListener)}.
+     *
+     * @return Future of Wi-Fi access points scanned by the device.
+     */
+    public ESPFuture<ArrayList<WiFiAccessPoint>> scanNetworksAsync() {
+
+        final ESPFuture<ArrayList<WiFiAccessPoint>> future = new ESPFuture<>();
+        scanNetworks(new WiFiScanListener() {
+
+            @Override
+            public void onWifiListReceived(ArrayList<WiFiAccessPoint> wifiList) {
+                future.complete(wifiList);
+            }
+
+            @Override
+            public void onWiFiScanFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Asynchronous version of {@link #sendDataToCustomEndPoint(String, byte[], ResponseListener)}.
+     * Requests are queued by the session. With Security 1 they are exchanged one at a time in the
+     * order of the calls, since requests and responses share one cipher stream. With Security 0 and
+     * Security 2 they are handed to the transport without waiting for earlier responses.
+     *
+     * @param path Endpoint.
+     * @param data Data to be send.
+     * @return Future of the response.
+     */
+    public ESPFuture<byte[]> sendDataToCustomEndPointAsync(final String path, final byte[] data) {
+
+        if (hasValidSession()) {
+            return releaseSessionOnCompletion(session.sendAsync(path, data));
+        }
+
+        return initSessionAsync().thenCompose(new ESPFuture.Function<Void, ESPFuture<byte[]>>() {
+
+            @Override
+            public ESPFuture<byte[]> apply(Void value) {
+                return releaseSessionOnCompletion(session.sendAsync(path, data));
+            }
+        });
+    }
+
+    private ESPFuture<byte[]> releaseSessionOnCompletion(ESPFuture<byte[]> future) {
+
+        // Added before listeners of the caller, so session is released before they are notified.
+        return future.addListener(new ESPFuture.Listener<byte[]>() {
+
+            @Override
+            public void onSuccess(byte[] result) {
+                releaseSession();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                releaseSession();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #provision(String, String, ProvisionListener)}.
+     *
+     * @param ssid       SSID of the Wi-Fi which is to be configure in device.
+     * @param passphrase Password of the Wi-Fi which is to be configure in device.
+     * @return Future which completes when device is connected to the Wi-Fi network and fails
+     * with RuntimeException in case of any provisioning failure.
+     */
+    public ESPFuture<Void> provisionAsync(String ssid, String passphrase) {
+
+        final ESPFuture<Void> future = new ESPFuture<>();
+        provision(ssid, passphrase, new ProvisionListener() {
+
+            @Override
+            public void createSessionFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void wifiConfigSent() {
+            }
+
+            @Override
+            public void wifiConfigFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void wifiConfigApplied() {
+            }
+
+            @Override
+            public void wifiConfigApplyFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void provisioningFailedFromDevice(ESPConstants.ProvisionFailureReason failureReason) {
+                future.completeExceptionally(new RuntimeException("Provisioning failed : " + failureReason));
+            }
+
+            @Override
+            public void deviceProvisioningSuccess() {
+                future.complete(null);
+            }
+
+            @Override
+            public void onProvisioningFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
     public void initSession(final ResponseListener listener) {
 
         try {
@@ -626,6 +982,8 @@ public class ESPDevice {
             Log.d(TAG, "Capabilities JSON not available.");
         }
 
+        requestFastBleLink();
+
         try {
             Log.d(TAG, "Init session with : " + securityType);
 
@@ -637,36 +995,115 @@ public class ESPDevice {
                     security = new Security1(proofOfPossession);
                     break;
                 case SECURITY_2:
-                    security = new Security2(userName, proofOfPossession);
+                    security = new Security2(userName, proofOfPossession, takeSrpSession());
                     break;
             }
 
-            session = new Session(transport, security);
+            // Requests of Security 1 share the cipher stream with responses and are exchanged one at a time.
+            boolean isMultiplexingSupported = getDeviceCapabilities().contains(ESPConstants.CAPABILITY_MULTIPLEXING)
+                    && !security.usesSharedStreamCipher();
+            synchronized (this) {
+                if (transport instanceof BLETransport) {
+                    sessionConnectionGeneration = ((BLETransport) transport).getConnectionGeneration();
+                }
+                session = new Session(new MultiplexTransport(transport, isMultiplexingSupported), security);
+            }
 
             session.init(null, new Session.SessionListener() {
 
                 @Override
                 public void OnSessionEstablished() {
+                    synchronized (ESPDevice.this) {
+                        sessionLastUsedAt = SystemClock.elapsedRealtime();
+                    }
                     listener.onSuccess(null);
+                    releaseFastBleLink();
                 }
 
                 @Override
                 public void OnSessionEstablishFailed(Exception e) {
+                    releaseFastBleLink();
+                    // Handshake is likely to be retried, e.g. with corrected PoP.
+                    if (securityType == ESPConstants.SecurityType.SECURITY_2) {
+                        prepareSrpSession();
+                    }
                     listener.onFailure(e);
                 }
             });
         } catch (Exception e) {
             e.printStackTrace();
+            releaseFastBleLink();
             listener.onFailure(e);
         }
     }
 
+    /**
+     * Create SRP client session for next Security 2 handshake and start computing its client values
+     * in background, so that they are ready when connection with the device is set up.
+     */
+    private synchronized void prepareSrpSession() {
+
+        if (preparedSrpSession == null) {
+            preparedSrpSession = new SRP6ClientSession();
+            preparedSrpSession.precomputeClientValues(SRP6CryptoParams.getInstance(3072, "SHA-512"));
+        }
+    }
+
+    private synchronized SRP6ClientSession takeSrpSession() {
+
+        SRP6ClientSession srpSession = preparedSrpSession;
+        preparedSrpSession = null;
+        return srpSession != null ? srpSession : new SRP6ClientSession();
+    }
+
+    private boolean isSoftAPTransport() {
+        return transport instanceof SoftAPTransport || transport instanceof SoftAPNioTransport;
+    }
+
+    private Network getSoftAPNetwork() {
+
+        if (transport instanceof SoftAPTransport) {
+            return ((SoftAPTransport) transport).getNetwork();
+        } else if (transport instanceof SoftAPNioTransport) {
+            return ((SoftAPNioTransport) transport).getNetwork();
+        }
+        return null;
+    }
+
+    /**
+     * Switch BLE link to fast profile for a burst of exchanges, like session establishment
+     * or Wi-Fi scan. Link drops back to low power profile when all bursts have completed.
+     */
+    private synchronized void requestFastBleLink() {
+
+        if (transport instanceof BLETransport && fastBleLinkRequestCount++ == 0) {
+            ((BLETransport) transport).setLinkProfile(ESPConstants.BleLinkProfile.HANDSHAKE_FAST);
+        }
+    }
+
+    private synchronized void releaseFastBleLink() {
+
+        if (transport instanceof BLETransport && fastBleLinkRequestCount > 0 && --fastBleLinkRequestCount == 0) {
+            ((BLETransport) transport).setLinkProfile(ESPConstants.BleLinkProfile.IDLE_LOW_POWER);
+        }
+    }
+
+    private void notifyWiFiScanFailed(Exception e) {
+
+        releaseSession();
+        releaseFastBleLink();
+        if (wifiScanListener != null) {
+            wifiScanListener.onWiFiScanFailed(e);
+        }
+    }
+
     private void sendData(final String path, byte[] data, final ResponseListener listener) {
 
         session.sendDataToDevice(path, data, new ResponseListener() {
 
             @Override
             public void onSuccess(byte[] returnData) {
+                releaseSession();
                 if (listener != null) {
                     listener.onSuccess(returnData);
                 }
@@ -675,6 +1112,7 @@ public class ESPDevice {
             @Override
             public void onFailure(Exception e) {
                 e.printStackTrace();
+                releaseSession();
                 if (listener != null) {
                     listener.onFailure(e);
                 }
@@ -689,27 +1127,25 @@ public class ESPDevice {
         wifiApList = new ArrayList<>();
         byte[] scanCommand = MessengeHelper.prepareWiFiScanMsg();
 
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, scanCommand, new ResponseBufferListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer response) {
 
-                processStartScanResponse(returnData);
+                processStartScanResponse(response);
 
                 byte[] getScanStatusCmd = MessengeHelper.prepareGetWiFiScanStatusMsg();
-                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new ResponseListener() {
+                session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, getScanStatusCmd, new ResponseBufferListener() {
 
                     @Override
-                    public void onSuccess(byte[] returnData) {
-                        processWifiStatusResponse(returnData);
+                    public void onSuccess(ByteBuffer response) {
+                        processWifiStatusResponse(response);
                     }
 
                     @Override
                     public void onFailure(Exception e) {
                         e.printStackTrace();
-                        if (wifiScanListener != null) {
-                            wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to send Wi-Fi scan command."));
-                        }
+                        notifyWiFiScanFailed(new RuntimeException("Failed to send Wi-Fi scan command."));
                     }
                 });
             }
@@ -717,9 +1153,7 @@ public class ESPDevice {
             @Override
             public void onFailure(Exception e) {
                 e.printStackTrace();
-                if (wifiScanListener != null) {
-                    wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to send Wi-Fi scan command."));
-                }
+                notifyWiFiScanFailed(new RuntimeException("Failed to send Wi-Fi scan command."));
             }
         });
     }
@@ -761,26 +1195,26 @@ public class ESPDevice {
         }
 
         byte[] data = MessengeHelper.prepareGetWiFiScanListMsg(start, count);
-        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new ResponseListener() {
+        session.sendDataToDevice(ESPConstants.HANDLER_PROV_SCAN, data, new ResponseBufferListener() {
 
             @Override
-            public void onSuccess(byte[] returnData) {
+            public void onSuccess(ByteBuffer response) {
                 Log.d(TAG, "Successfully got SSID list");
-                processGetSSIDs(returnData);
+                processGetSSIDs(response);
             }
 
             @Override
             public void onFailure(Exception e) {
                 e.printStackTrace();
-                if (wifiScanListener != null) {
-                    wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to get Wi-Fi Networks."));
-                }
+                notifyWiFiScanFailed(new RuntimeException("Failed to get Wi-Fi Networks."));
             }
         });
     }
 
     private void completeWifiList() {
 
+        releaseSession();
+        releaseFastBleLink();
         if (wifiScanListener != null) {
             wifiScanListener.onWifiListReceived(wifiApList);
         }
@@ -881,7 +1315,8 @@ public class ESPDevice {
                     if (provisionListener != null) {
                         provisionListener.deviceProvisioningSuccess();
                     }
-                    session = null;
+                    // Device stops provisioning service once it is provisioned.
+                    invalidateSession();
                     disableOnlyWifiNetwork();
 
                 } else if (wifiStationState == WifiConstants.WifiStationState.Disconnected) {
@@ -890,7 +1325,7 @@ public class ESPDevice {
                     if (provisionListener != null) {
                         provisionListener.provisioningFailedFromDevice(ESPConstants.ProvisionFailureReason.DEVICE_DISCONNECTED);
                     }
-                    session = null;
+                    releaseSession();
                     disableOnlyWifiNetwork();
 
                 } else if (wifiStationState == WifiConstants.WifiStationState.Connecting) {
@@ -900,7 +1335,7 @@ public class ESPDevice {
                         pollForWifiConnectionStatus();
                     } catch (InterruptedException e) {
                         e.printStackTrace();
-                        session = null;
+                        releaseSession();
                         disableOnlyWifiNetwork();
                         provisionListener.onProvisioningFailed(new RuntimeException("Provisioning Failed"));
                     }
@@ -917,7 +1352,7 @@ public class ESPDevice {
                     } else {
                         provisionListener.provisioningFailedFromDevice(ESPConstants.ProvisionFailureReason.UNKNOWN);
                     }
-                    session = null;
+                    releaseSession();
                     disableOnlyWifiNetwork();
                 }
             }
@@ -931,20 +1366,20 @@ public class ESPDevice {
         });
     }
 
-    private void processStartScanResponse(byte[] responseData) {
+    private void processStartScanResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Wi-Fi start scan command response");
 
         try {
             WifiScan.WiFiScanPayload payload = WifiScan.WiFiScanPayload.parseFrom(responseData);
-            WifiScan.RespScanStart response = WifiScan.RespScanStart.parseFrom(payload.toByteArray());
+            WifiScan.RespScanStart response = payload.getRespScanStart();
             // TODO Proto should send status as ok started or failed
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
     }
 
-    private void processWifiStatusResponse(byte[] responseData) {
+    private void processWifiStatusResponse(ByteBuffer responseData) {
 
         Log.d(TAG, "Process Wi-Fi scan status command response");
         try {
@@ -957,24 +1392,25 @@ public class ESPDevice {
                 getFullWiFiList();
             } else {
                 // TODO Error case
+                releaseSession();
+                releaseFastBleLink();
             }
 
         } catch (InvalidProtocolBufferException e) {
 
             e.printStackTrace();
-            if (wifiScanListener != null) {
-                wifiScanListener.onWiFiScanFailed(new RuntimeException("Failed to get Wi-Fi status."));
-            }
+            notifyWiFiScanFailed(new RuntimeException("Failed to get Wi-Fi status."));
         }
     }
 
-    private void processGetSSIDs(byte[] responseData) {
+    private void processGetSSIDs(ByteBuffer responseData) {
 
         try {
             WifiScan.WiFiScanPayload payload = WifiScan.WiFiScanPayload.parseFrom(responseData);
             final WifiScan.RespScanResult response = payload.getRespScanResult();
 
             Log.d(TAG, "Response count : " + response.getEntriesCount());
+            ArrayList<WiFiAccessPoint> page = new ArrayList<>();
 
             for (int i = 0; i < response.getEntriesCount(); i++) {
 
@@ -993,6 +1429,9 @@ public class ESPDevice {
 
                             wifiApList.get(index).setRssi(rssi);
                         }
+                        if (!page.contains(wifiApList.get(index))) {
+                            page.add(wifiApList.get(index));
+                        }
                         break;
                     }
                 }
@@ -1004,6 +1443,7 @@ public class ESPDevice {
                     wifiAp.setRssi(response.getEntries(i).getRssi());
                     wifiAp.setSecurity(response.getEntries(i).getAuthValue());
                     wifiApList.add(wifiAp);
+                    page.add(wifiAp);
                 }
 
                 Log.d(TAG, "Size of  list : " + wifiApList.size());
@@ -1011,6 +1451,11 @@ public class ESPDevice {
 
             startIndex = startIndex + 4;
 
+            if (wifiScanListener instanceof WiFiScanPageListener) {
+                ((WiFiScanPageListener) wifiScanListener).onWifiListPageReceived(page,
+                        Math.min(startIndex, totalCount), totalCount);
+            }
+
             int temp = totalCount - startIndex;
 
             if (temp > 0) {
@@ -1025,6 +1470,8 @@ public class ESPDevice {
         } catch (InvalidProtocolBufferException e) {
 
             e.printStackTrace();
+            releaseSession();
+            releaseFastBleLink();
         }
     }
 
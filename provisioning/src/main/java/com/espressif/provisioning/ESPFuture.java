@@ -0,0 +1,413 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of an asynchronous operation with the device, which can be composed with other operations.
+ * CompletableFuture is not available on all supported Android versions, so this class provides the
+ * subset of it which is needed to chain and combine device operations, with cancellation and timeouts.
+ *
+ * <p>Listeners and functions passed to {@link #thenApply} and {@link #thenCompose} are called on the
+ * thread which completes the future, or on the calling thread if the future is already complete.
+ * Cancelling a future also cancels the future it was derived from. Cancelling does not abort a request
+ * which has already been sent to the device, its response is ignored.
+ *
+ * @param <T> Type of the result.
+ */
+public class ESPFuture<T> implements Future<T> {
+
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ESPFuture-timeout");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final List<Listener<? super T>> listeners = new ArrayList<>();
+    private boolean isDone;
+    private boolean isCancelled;
+    private T result;
+    private Exception exception;
+    private Future<?> upstream;
+
+    /**
+     * @param value Result.
+     * @return Future which is already completed with given result.
+     */
+    public static <T> ESPFuture<T> completed(T value) {
+        ESPFuture<T> future = new ESPFuture<>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * @param e Failure.
+     * @return Future which has already failed with given exception.
+     */
+    public static <T> ESPFuture<T> failed(Exception e) {
+        ESPFuture<T> future = new ESPFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Combine futures which run at the same time.
+     *
+     * @param futures Futures to wait for.
+     * @return Future which completes with results of all given futures, in the same order,
+     * or fails as soon as one of them fails.
+     */
+    public static ESPFuture<List<Object>> allOf(ESPFuture<?>... futures) {
+        return allOf(Arrays.asList(futures));
+    }
+
+    /**
+     * Combine futures which run at the same time.
+     *
+     * @param futures Futures to wait for.
+     * @return Future which completes with results of all given futures, in the same order,
+     * or fails as soon as one of them fails.
+     */
+    public static ESPFuture<List<Object>> allOf(final List<? extends ESPFuture<?>> futures) {
+
+        final ESPFuture<List<Object>> combined = new ESPFuture<>();
+        final Object[] results = new Object[futures.size()];
+        final int[] remaining = new int[]{futures.size()};
+
+        if (futures.isEmpty()) {
+            combined.complete(new ArrayList<>());
+            return combined;
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+
+            final int index = i;
+            futures.get(i).addListener(new Listener<Object>() {
+
+                @Override
+                public void onSuccess(Object result) {
+                    boolean isLast;
+                    synchronized (results) {
+                        results[index] = result;
+                        isLast = --remaining[0] == 0;
+                    }
+                    if (isLast) {
+                        combined.complete(new ArrayList<>(Arrays.asList(results)));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    if (combined.completeExceptionally(e)) {
+                        for (ESPFuture<?> future : futures) {
+                            future.cancel(false);
+                        }
+                    }
+                }
+            });
+        }
+        return combined;
+    }
+
+    /**
+     * Complete the future with a result.
+     *
+     * @param value Result.
+     * @return true if this call completed the future, false if it was already complete.
+     */
+    public boolean complete(T value) {
+        return finish(value, null, false);
+    }
+
+    /**
+     * Complete the future with a failure.
+     *
+     * @param e Failure.
+     * @return true if this call completed the future, false if it was already complete.
+     */
+    public boolean completeExceptionally(Exception e) {
+        return finish(null, e, false);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        boolean isCompleted = finish(null, new CancellationException("Operation cancelled"), true);
+        Future<?> source;
+        synchronized (this) {
+            source = upstream;
+        }
+        if (isCompleted && source != null) {
+            source.cancel(mayInterruptIfRunning);
+        }
+        return isCompleted;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return isDone;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+
+        while (!isDone) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isDone) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    /**
+     * Add listener which is called once the future completes.
+     *
+     * @param listener Listener.
+     * @return This future.
+     */
+    public ESPFuture<T> addListener(Listener<? super T> listener) {
+
+        synchronized (this) {
+            if (!isDone) {
+                listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    /**
+     * Transform the result once it is available.
+     *
+     * @param function Function which transforms the result. Exception thrown by it fails the returned future.
+     * @return Future of the transformed result.
+     */
+    public <R> ESPFuture<R> thenApply(final Function<? super T, ? extends R> function) {
+
+        final ESPFuture<R> next = new ESPFuture<>();
+        next.setUpstream(this);
+        addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+                try {
+                    next.complete(function.apply(value));
+                } catch (Exception e) {
+                    next.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                next.completeExceptionally(e);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Start the next asynchronous operation once the result is available.
+     *
+     * @param function Function which starts the next operation with the result.
+     * @return Future of the next operation.
+     */
+    public <R> ESPFuture<R> thenCompose(final Function<? super T, ? extends ESPFuture<R>> function) {
+
+        final ESPFuture<R> next = new ESPFuture<>();
+        next.setUpstream(this);
+        addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(T value) {
+
+                ESPFuture<R> inner;
+                try {
+                    inner = function.apply(value);
+                } catch (Exception e) {
+                    next.completeExceptionally(e);
+                    return;
+                }
+                next.setUpstream(inner);
+                inner.addListener(new Listener<R>() {
+
+                    @Override
+                    public void onSuccess(R result) {
+                        next.complete(result);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        next.completeExceptionally(e);
+                    }
+                });
+                if (next.isCancelled()) {
+                    inner.cancel(false);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                next.completeExceptionally(e);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Fail the future with TimeoutException if it does not complete in given time.
+     * Operation which has timed out is cancelled.
+     *
+     * @param timeout Timeout.
+     * @param unit    Unit of timeout.
+     * @return This future.
+     */
+    public ESPFuture<T> withTimeout(long timeout, TimeUnit unit) {
+
+        final ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (completeExceptionally(new TimeoutException("Operation timed out"))) {
+                    Future<?> source;
+                    synchronized (ESPFuture.this) {
+                        source = upstream;
+                    }
+                    if (source != null) {
+                        source.cancel(false);
+                    }
+                }
+            }
+        }, timeout, unit);
+
+        addListener(new Listener<T>() {
+
+            @Override
+            public void onSuccess(T result) {
+                timeoutTask.cancel(false);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                timeoutTask.cancel(false);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Set the future which this future depends on, it is cancelled together with this future.
+     */
+    synchronized void setUpstream(Future<?> upstream) {
+        this.upstream = upstream;
+    }
+
+    private boolean finish(T value, Exception e, boolean isCancellation) {
+
+        List<Listener<? super T>> listenersToNotify;
+        synchronized (this) {
+            if (isDone) {
+                return false;
+            }
+            isDone = true;
+            isCancelled = isCancellation;
+            result = value;
+            exception = e;
+            listenersToNotify = new ArrayList<>(listeners);
+            listeners.clear();
+            notifyAll();
+        }
+
+        for (Listener<? super T> listener : listenersToNotify) {
+            notifyListener(listener);
+        }
+        return true;
+    }
+
+    private void notifyListener(Listener<? super T> listener) {
+
+        T value;
+        Exception e;
+        synchronized (this) {
+            value = result;
+            e = exception;
+        }
+        if (e == null) {
+            listener.onSuccess(value);
+        } else {
+            listener.onFailure(e);
+        }
+    }
+
+    private T getResult() throws ExecutionException {
+
+        if (isCancelled) {
+            throw (CancellationException) exception;
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return result;
+    }
+
+    /**
+     * Listener which receives the result of the future.
+     */
+    public interface Listener<T> {
+
+        void onSuccess(T result);
+
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Function used to transform result of the future.
+     */
+    public interface Function<T, R> {
+
+        R apply(T value) throws Exception;
+    }
+}
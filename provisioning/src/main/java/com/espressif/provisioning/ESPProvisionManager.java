@@ -15,6 +15,7 @@
 package com.espressif.provisioning;
 
 import android.Manifest;
+import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.le.ScanFilter;
@@ -45,11 +46,16 @@ import com.google.android.gms.vision.barcode.BarcodeDetector;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.Result;
 
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
@@ -69,6 +75,15 @@ public class ESPProvisionManager {
     private Handler handler;
     private boolean isScanned = false;
 
+    // Multi-device mode
+    private static final int DEFAULT_MAX_CONNECTED_BLE_DEVICES = 4;
+
+    private final LinkedHashMap<String, ESPDevice> bleDevices = new LinkedHashMap<>();
+    private final ArrayDeque<String> pendingBleConnections = new ArrayDeque<>();
+    private final HashSet<String> connectedBleDevices = new HashSet<>();
+    private String connectingBleDevice;
+    private int maxConnectedBleDevices = DEFAULT_MAX_CONNECTED_BLE_DEVICES;
+
     /**
      * This method is used to get singleton instance of
      *
@@ -110,6 +125,157 @@ public class ESPProvisionManager {
         return espDevice;
     }
 
+    /**
+     * This method is used to add BLE device to multi-device mode.
+     * In multi-device mode, manager keeps a separate ESPDevice (with its own transport and session)
+     * for every added device, so several devices can be connected and provisioned at the same time.
+     * Connection events of these devices are tagged with the device address, see {@link DeviceConnectionEvent#getDeviceAddress()}.
+     *
+     * @param bluetoothDevice    BLE device.
+     * @param primaryServiceUuid Primary service UUID of the device.
+     * @param securityType       Security type.
+     * @return Returns ESPDevice of given BLE device.
+     */
+    public synchronized ESPDevice addBleDevice(BluetoothDevice bluetoothDevice, String primaryServiceUuid,
+                                               ESPConstants.SecurityType securityType) {
+
+        ESPDevice device = bleDevices.get(bluetoothDevice.getAddress());
+        if (device == null) {
+            device = new ESPDevice(context, ESPConstants.TransportType.TRANSPORT_BLE, securityType);
+            device.setBluetoothDevice(bluetoothDevice);
+            device.setPrimaryServiceUuid(primaryServiceUuid);
+            bleDevices.put(bluetoothDevice.getAddress(), device);
+        }
+        return device;
+    }
+
+    /**
+     * This method is used to get ESPDevice of BLE device added in multi-device mode.
+     *
+     * @param deviceAddress Bluetooth address of the device.
+     * @return Returns ESPDevice or null if device is not added.
+     */
+    public synchronized ESPDevice getBleDevice(String deviceAddress) {
+        return bleDevices.get(deviceAddress);
+    }
+
+    /**
+     * @return Returns ESPDevices of all BLE devices added in multi-device mode.
+     */
+    public synchronized List<ESPDevice> getBleDevices() {
+        return new ArrayList<>(bleDevices.values());
+    }
+
+    /**
+     * This method is used to set how many BLE devices can be connected at the same time in multi-device mode.
+     * Android BLE stack supports a limited number of simultaneous connections (typically 4 to 7, depending on the phone).
+     *
+     * @param maxConnectedBleDevices Maximum number of connected devices.
+     */
+    public synchronized void setMaxConnectedBleDevices(int maxConnectedBleDevices) {
+        this.maxConnectedBleDevices = Math.max(1, maxConnectedBleDevices);
+        connectNextBleDevice();
+    }
+
+    /**
+     * This method is used to connect all BLE devices added in multi-device mode.
+     * Devices are connected one after another, since Android handles one connection attempt at a time reliably,
+     * and up to the maximum number of connected devices. When a device is disconnected or removed,
+     * the next waiting device is connected.
+     * App receives DeviceConnectionEvent with device address for every device.
+     */
+    @RequiresPermission(Manifest.permission.BLUETOOTH)
+    public synchronized void connectBleDevices() {
+
+        if (!EventBus.getDefault().isRegistered(this)) {
+            EventBus.getDefault().register(this);
+        }
+
+        for (String address : bleDevices.keySet()) {
+            if (!connectedBleDevices.contains(address) && !address.equals(connectingBleDevice)
+                    && !pendingBleConnections.contains(address)) {
+                pendingBleConnections.add(address);
+            }
+        }
+        connectNextBleDevice();
+    }
+
+    /**
+     * This method is used to disconnect and remove BLE device from multi-device mode.
+     *
+     * @param deviceAddress Bluetooth address of the device.
+     */
+    public synchronized void removeBleDevice(String deviceAddress) {
+
+        ESPDevice device = bleDevices.remove(deviceAddress);
+        pendingBleConnections.remove(deviceAddress);
+        connectedBleDevices.remove(deviceAddress);
+        if (deviceAddress.equals(connectingBleDevice)) {
+            connectingBleDevice = null;
+        }
+        if (device != null) {
+            device.disconnectDevice();
+        }
+
+        if (bleDevices.isEmpty()) {
+            if (EventBus.getDefault().isRegistered(this)) {
+                EventBus.getDefault().unregister(this);
+            }
+        } else {
+            connectNextBleDevice();
+        }
+    }
+
+    /**
+     * Tracks connection state of devices added in multi-device mode. It is not meant to be called by app.
+     *
+     * @param event Connection event posted by transport.
+     */
+    @Subscribe
+    public synchronized void onEvent(DeviceConnectionEvent event) {
+
+        String address = event.getDeviceAddress();
+        if (address == null || !bleDevices.containsKey(address)) {
+            return;
+        }
+
+        switch (event.getEventType()) {
+
+            case ESPConstants.EVENT_DEVICE_CONNECTED:
+                connectedBleDevices.add(address);
+                if (address.equals(connectingBleDevice)) {
+                    connectingBleDevice = null;
+                }
+                break;
+
+            case ESPConstants.EVENT_DEVICE_CONNECTION_FAILED:
+            case ESPConstants.EVENT_DEVICE_DISCONNECTED:
+                connectedBleDevices.remove(address);
+                if (address.equals(connectingBleDevice)) {
+                    connectingBleDevice = null;
+                }
+                break;
+        }
+        connectNextBleDevice();
+    }
+
+    @SuppressLint("MissingPermission")
+    private void connectNextBleDevice() {
+
+        if (connectingBleDevice != null || connectedBleDevices.size() >= maxConnectedBleDevices) {
+            return;
+        }
+
+        String address = pendingBleConnections.poll();
+        if (address == null) {
+            return;
+        }
+
+        Log.d(TAG, "Connecting BLE device " + address + ", connected devices : " + connectedBleDevices.size());
+        connectingBleDevice = address;
+        bleDevices.get(address).connectToDevice();
+    }
+
     /**
      * This method scans QR code from, get the device information and checks whether this device is available or not.
      * If device is available in scanning (BLE / Wi-Fi), then it will return ESPDevice.
@@ -14,10 +14,15 @@
 
 package com.espressif.provisioning;
 
+import com.espressif.provisioning.listeners.ResponseBufferListener;
 import com.espressif.provisioning.listeners.ResponseListener;
 import com.espressif.provisioning.security.Security;
 import com.espressif.provisioning.transport.Transport;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Session object encapsulates the Transport and Security
  * protocol implementations and is responsible for performing
@@ -26,10 +31,21 @@ import com.espressif.provisioning.transport.Transport;
 public class Session {
 
     private static final String TAG = "Espressif::" + Session.class.getSimpleName();
+    private static final int INITIAL_RESPONSE_BUFFER_SIZE = 1024;
+
+    // Buffer for responses decrypted by ResponseBufferListener exchanges, one per thread.
+    // Buffer is taken out while it is handed to the listener, so that a response decrypted
+    // on the same thread from within the listener gets another buffer.
+    private static final ThreadLocal<ByteBuffer> pooledResponseBuffer = new ThreadLocal<>();
+
     private Transport transport;
     private Security security;
     private boolean isSessionEstablished;
 
+    // Exchanges waiting for the response of the previous one, if Security shares one cipher stream.
+    private final ArrayDeque<Exchange> queuedExchanges = new ArrayDeque<>();
+    private boolean isExchangeInProgress;
+
     /**
      * Initialize Session object with Transport and Security interface implementations
      *
@@ -117,31 +133,117 @@ public class Session {
         }
     }
 
-    public void sendDataToDevice(final String path, byte[] data, final ResponseListener listener) {
+    /**
+     * Establish the session asynchronously.
+     *
+     * @return Future which completes once the session is established.
+     */
+    public ESPFuture<Void> initAsync() {
 
-        final byte[] encryptedData = security.encrypt(data);
+        final ESPFuture<Void> future = new ESPFuture<>();
+        init(null, new SessionListener() {
 
-        if (isSessionEstablished) {
+            @Override
+            public void OnSessionEstablished() {
+                future.complete(null);
+            }
 
-            transport.sendConfigData(path, encryptedData, new ResponseListener() {
+            @Override
+            public void OnSessionEstablishFailed(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
 
-                @Override
-                public void onSuccess(byte[] returnData) {
+    /**
+     * Send data to the device asynchronously. Session is established first if required.
+     * Requests sent from different threads are encrypted in the same order as they are handed
+     * to the transport. If Security uses one cipher stream for requests and responses (Security 1),
+     * a request is encrypted only after the response of the previous one has been decrypted,
+     * so requests of the session are exchanged one at a time in the order of the calls.
+     * Otherwise they are sent without waiting for earlier responses.
+     *
+     * @param path Path of the endpoint.
+     * @param data Data to be sent.
+     * @return Future of the decrypted response.
+     */
+    public ESPFuture<byte[]> sendAsync(String path, byte[] data) {
 
-                    byte[] decryptedData = security.decrypt(returnData);
-                    if (listener != null) {
-                        listener.onSuccess(decryptedData);
-                    }
+        final ESPFuture<byte[]> future = new ESPFuture<>();
+        sendDataToDevice(path, data, new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                future.complete(returnData);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public void sendDataToDevice(final String path, final byte[] data, final ResponseListener listener) {
+
+        sendDataToDevice(path, data, listener, null);
+    }
+
+    /**
+     * Send data to the device and decrypt the response into a buffer which is reused for later responses,
+     * instead of allocating an array for every response.
+     * Buffer is valid only during {@link ResponseBufferListener#onSuccess(ByteBuffer)}.
+     * Session is established first if required.
+     *
+     * @param path     Path of the endpoint.
+     * @param data     Data to be sent.
+     * @param listener Listener which receives the decrypted response.
+     */
+    public void sendDataToDevice(final String path, final byte[] data, final ResponseBufferListener listener) {
+
+        sendDataToDevice(path, data, null, listener);
+    }
+
+    private void sendDataToDevice(final String path, final byte[] data, final ResponseListener listener,
+                                  final ResponseBufferListener bufferListener) {
+
+        final ResponseListener exchangeListener = bufferListener != null ? null : new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                if (listener != null) {
+                    listener.onSuccess(returnData);
                 }
+            }
 
-                @Override
-                public void onFailure(Exception e) {
-                    isSessionEstablished = false;
-                    if (listener != null) {
-                        listener.onFailure(e);
-                    }
+            @Override
+            public void onFailure(Exception e) {
+                isSessionEstablished = false;
+                if (listener != null) {
+                    listener.onFailure(e);
                 }
-            });
+            }
+        };
+
+        final ResponseBufferListener exchangeBufferListener = bufferListener == null ? null : new ResponseBufferListener() {
+
+            @Override
+            public void onSuccess(ByteBuffer response) {
+                bufferListener.onSuccess(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                isSessionEstablished = false;
+                bufferListener.onFailure(e);
+            }
+        };
+
+        if (isSessionEstablished) {
+
+            exchange(new Exchange(path, data, exchangeListener, exchangeBufferListener));
 
         } else {
 
@@ -149,36 +251,181 @@ public class Session {
 
                 @Override
                 public void OnSessionEstablished() {
-
-                    transport.sendConfigData(path, encryptedData, new ResponseListener() {
-
-                        @Override
-                        public void onSuccess(byte[] returnData) {
-                            if (listener != null) {
-                                listener.onSuccess(returnData);
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Exception e) {
-                            isSessionEstablished = false;
-                            if (listener != null) {
-                                listener.onFailure(e);
-                            }
-                        }
-                    });
+                    exchange(new Exchange(path, data, exchangeListener, exchangeBufferListener));
                 }
 
                 @Override
                 public void OnSessionEstablishFailed(Exception e) {
                     if (listener != null) {
                         listener.onFailure(e);
+                    } else if (bufferListener != null) {
+                        bufferListener.onFailure(e);
                     }
                 }
             });
         }
     }
 
+    /**
+     * Start the exchange, or queue it behind the exchange in progress if Security shares one
+     * cipher stream for requests and responses.
+     */
+    private void exchange(Exchange exchange) {
+
+        if (!security.usesSharedStreamCipher()) {
+            sendEncrypted(exchange, false);
+            return;
+        }
+
+        synchronized (queuedExchanges) {
+            if (isExchangeInProgress) {
+                queuedExchanges.add(exchange);
+                return;
+            }
+            isExchangeInProgress = true;
+        }
+        sendEncrypted(exchange, true);
+    }
+
+    private void startNextExchange() {
+
+        Exchange exchange;
+        synchronized (queuedExchanges) {
+            exchange = queuedExchanges.poll();
+            if (exchange == null) {
+                isExchangeInProgress = false;
+                return;
+            }
+        }
+        sendEncrypted(exchange, true);
+    }
+
+    /**
+     * Encrypt the data and hand it to the transport as one step, so that requests reach the device
+     * in the order they were encrypted. Response is decrypted before it is handed to the listener.
+     * Only the first callback of the transport is handled, as transports may report a failed request
+     * with onFailure followed by onSuccess.
+     *
+     * @param isChained true if the next queued exchange is to be started once the response is decrypted.
+     */
+    private void sendEncrypted(final Exchange exchange, final boolean isChained) {
+
+        final AtomicBoolean isAnswered = new AtomicBoolean();
+        ResponseListener transportListener = new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+
+                if (!isAnswered.compareAndSet(false, true)) {
+                    return;
+                }
+                if (exchange.bufferListener != null) {
+                    onBufferResponse(returnData);
+                    return;
+                }
+                byte[] decryptedData;
+                try {
+                    decryptedData = security.decrypt(returnData);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                if (isChained) {
+                    startNextExchange();
+                }
+                exchange.listener.onSuccess(decryptedData);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (isAnswered.compareAndSet(false, true)) {
+                    fail(e);
+                }
+            }
+
+            private void onBufferResponse(byte[] returnData) {
+
+                if (returnData == null) {
+                    fail(new RuntimeException("No response from device"));
+                    return;
+                }
+                ByteBuffer response = takeResponseBuffer(returnData.length);
+                try {
+                    security.decrypt(ByteBuffer.wrap(returnData), response);
+                } catch (RuntimeException e) {
+                    pooledResponseBuffer.set(response);
+                    fail(e);
+                    return;
+                }
+                response.flip();
+                if (isChained) {
+                    startNextExchange();
+                }
+                try {
+                    exchange.bufferListener.onSuccess(response);
+                } finally {
+                    pooledResponseBuffer.set(response);
+                }
+            }
+
+            private void fail(Exception e) {
+                if (isChained) {
+                    startNextExchange();
+                }
+                if (exchange.bufferListener != null) {
+                    exchange.bufferListener.onFailure(e);
+                } else {
+                    exchange.listener.onFailure(e);
+                }
+            }
+        };
+
+        byte[] encryptedData;
+        synchronized (security) {
+            try {
+                encryptedData = security.encrypt(exchange.data);
+            } catch (RuntimeException e) {
+                transportListener.onFailure(e);
+                return;
+            }
+            transport.sendConfigData(exchange.path, encryptedData, transportListener);
+        }
+    }
+
+    /**
+     * Take the response buffer of the calling thread, cleared and with room for at least given number of bytes.
+     * Decrypted data of all Security implementations is not longer than the encrypted data.
+     */
+    private static ByteBuffer takeResponseBuffer(int length) {
+
+        ByteBuffer buffer = pooledResponseBuffer.get();
+        pooledResponseBuffer.set(null);
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, INITIAL_RESPONSE_BUFFER_SIZE));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Request of the application and listener which receives the decrypted response,
+     * either as array or in a pooled buffer.
+     */
+    private static class Exchange {
+
+        final String path;
+        final byte[] data;
+        final ResponseListener listener;
+        final ResponseBufferListener bufferListener;
+
+        Exchange(String path, byte[] data, ResponseListener listener, ResponseBufferListener bufferListener) {
+            this.path = path;
+            this.data = data;
+            this.listener = listener;
+            this.bufferListener = bufferListener;
+        }
+    }
+
     /**
      * Callback interface for listening to Session
      * establish events.
@@ -0,0 +1,38 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface used for getting notified about the
+ * request status sent over the Session, with the decrypted
+ * response in a buffer which is reused for later responses
+ */
+public interface ResponseBufferListener {
+
+    /***
+     * Successfully sent and received response from device.
+     * Buffer is valid only during this call, it must not be kept
+     * @param response decrypted response, between position and limit
+     */
+    void onSuccess(ByteBuffer response);
+
+    /***
+     * Failed to send data or receive response from device
+     * @param e
+     */
+    void onFailure(Exception e);
+}
@@ -0,0 +1,37 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.listeners;
+
+import com.espressif.provisioning.WiFiAccessPoint;
+
+import java.util.ArrayList;
+
+/**
+ * Wi-Fi scan listener which also gets scan results page by page, as soon as each page is received from the device.
+ * Complete list is still returned by {@link #onWifiListReceived(ArrayList)} when all pages are received.
+ */
+public interface WiFiScanPageListener extends WiFiScanListener {
+
+    /**
+     * Callback method to return Wi-Fi access points of one page of scan results.
+     * Access point which was already returned in an earlier page is returned as the same object,
+     * with its RSSI updated if it is stronger in this page.
+     *
+     * @param wifiList    ArrayList of Wi-Fi access points of this page.
+     * @param resultCount Number of scan results received so far.
+     * @param totalCount  Total number of scan results reported by device.
+     */
+    void onWifiListPageReceived(ArrayList<WiFiAccessPoint> wifiList, int resultCount, int totalCount);
+}
@@ -0,0 +1,99 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.security;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-GCM cipher contexts of an established Security 2 session.
+ * Key and IV of the session do not change, so key and parameter objects are created once and
+ * encryption and decryption use separate Cipher instances, each guarded by its own lock.
+ * Decrypt context is initialized once, GCM cipher returns to its initialized state after doFinal.
+ * Encrypt context has to be initialized again for every message, as required by Cipher for GCM encryption.
+ */
+final class AesGcmSessionCipher {
+
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    static final int TAG_LENGTH = 16;
+
+    private final SecretKeySpec keySpec;
+    private final GCMParameterSpec ivSpec;
+    private final Cipher encryptCipher;
+    private final Cipher decryptCipher;
+
+    AesGcmSessionCipher(byte[] key, byte[] iv) throws GeneralSecurityException {
+
+        keySpec = new SecretKeySpec(key, "AES");
+        ivSpec = new GCMParameterSpec(TAG_LENGTH * 8, iv);
+        encryptCipher = Cipher.getInstance(TRANSFORMATION);
+        decryptCipher = Cipher.getInstance(TRANSFORMATION);
+        decryptCipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+    }
+
+    byte[] encrypt(byte[] data) throws GeneralSecurityException {
+
+        synchronized (encryptCipher) {
+            encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
+            return encryptCipher.doFinal(data);
+        }
+    }
+
+    byte[] decrypt(byte[] data) throws GeneralSecurityException {
+
+        synchronized (decryptCipher) {
+            try {
+                return decryptCipher.doFinal(data);
+            } catch (GeneralSecurityException e) {
+                decryptCipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Encrypt remaining bytes of src into dst. Authentication tag is appended to the cipher text.
+     *
+     * @return Number of bytes written to dst.
+     */
+    int encrypt(ByteBuffer src, ByteBuffer dst) throws GeneralSecurityException {
+
+        synchronized (encryptCipher) {
+            encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
+            return encryptCipher.doFinal(src, dst);
+        }
+    }
+
+    /**
+     * Decrypt and authenticate remaining bytes of src into dst.
+     *
+     * @return Number of bytes written to dst.
+     */
+    int decrypt(ByteBuffer src, ByteBuffer dst) throws GeneralSecurityException {
+
+        synchronized (decryptCipher) {
+            try {
+                return decryptCipher.doFinal(src, dst);
+            } catch (GeneralSecurityException e) {
+                decryptCipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+                throw e;
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@
 
 package com.espressif.provisioning.security;
 
+import java.nio.ByteBuffer;
+
 /**
  * Security interface which abstracts
  * the handshake and crypto behavior supported by a specific
@@ -29,6 +31,14 @@ public interface Security {
      */
     byte[] getNextRequestInSession(byte[] responseData);
 
+    /**
+     * Get whether requests and responses are processed by one cipher stream, like the AES-CTR
+     * stream of Security 1. In that case every response has to be decrypted before the next request
+     * is encrypted, so requests of a session can not overlap.
+     * @return true if encryption and decryption share one cipher stream
+     */
+    boolean usesSharedStreamCipher();
+
     /**
      * Encrypt the data according to the Security implementation
      * @param data
@@ -42,4 +52,22 @@ public interface Security {
      * @return
      */
     byte[] decrypt(byte[] data);
+
+    /**
+     * Encrypt remaining bytes of src into dst, without allocating output array.
+     * Position of src is advanced by the number of bytes read and position of dst by the number of bytes written.
+     * @param src data to be encrypted
+     * @param dst buffer for encrypted data
+     * @return number of bytes written to dst
+     */
+    int encrypt(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * Decrypt remaining bytes of src into dst, without allocating output array.
+     * Position of src is advanced by the number of bytes read and position of dst by the number of bytes written.
+     * @param src data to be decrypted
+     * @param dst buffer for decrypted data
+     * @return number of bytes written to dst
+     */
+    int decrypt(ByteBuffer src, ByteBuffer dst);
 }
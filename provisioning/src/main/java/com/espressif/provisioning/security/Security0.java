@@ -19,6 +19,8 @@ import android.util.Log;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.nio.ByteBuffer;
+
 import espressif.Sec0;
 import espressif.Session;
 
@@ -51,6 +53,11 @@ public class Security0 implements Security {
         return response;
     }
 
+    @Override
+    public boolean usesSharedStreamCipher() {
+        return false;
+    }
+
     @Override
     public byte[] encrypt(byte[] data) {
         return data;
@@ -61,6 +68,20 @@ public class Security0 implements Security {
         return data;
     }
 
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        dst.put(src);
+        return length;
+    }
+
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        dst.put(src);
+        return length;
+    }
+
     private byte[] getStep0Request() {
         Sec0.S0SessionCmd s0SessionCmd = Sec0.S0SessionCmd
                 .newBuilder()
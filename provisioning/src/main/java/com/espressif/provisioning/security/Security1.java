@@ -22,6 +22,7 @@ import com.google.crypto.tink.subtle.X25519;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
@@ -30,6 +31,7 @@ import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -196,8 +198,14 @@ public class Security1 implements Security {
     }
 
     private void generateKeyPair() throws InvalidKeyException {
-        this.privateKey = X25519.generatePrivateKey();
-        this.publicKey = X25519.publicFromPrivate(this.privateKey);
+        X25519KeyPool.KeyPair keyPair = X25519KeyPool.getInstance().take();
+        this.privateKey = keyPair.privateKey;
+        this.publicKey = keyPair.publicKey;
+    }
+
+    @Override
+    public boolean usesSharedStreamCipher() {
+        return true;
     }
 
     public byte[] encrypt(byte[] data) {
@@ -207,4 +215,22 @@ public class Security1 implements Security {
     public byte[] decrypt(byte[] data) {
         return this.cipher.update(data);
     }
+
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
+        return update(src, dst);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
+        return update(src, dst);
+    }
+
+    private int update(ByteBuffer src, ByteBuffer dst) {
+        try {
+            return this.cipher.update(src, dst);
+        } catch (ShortBufferException e) {
+            throw new RuntimeException("Output buffer too small", e);
+        }
+    }
 }
@@ -25,18 +25,10 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.math.BigInteger;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-
 import espressif.Sec2;
 import espressif.Session;
 
@@ -48,6 +40,8 @@ import espressif.Session;
 public class Security2 implements Security {
     private static final String TAG = "Espressif::" + Security2.class.getSimpleName();
 
+    public static final int TAG_LENGTH = AesGcmSessionCipher.TAG_LENGTH;
+
     private static final int SESSION_STATE_REQUEST1 = 0;
     private static final int SESSION_STATE_RESPONSE1_REQUEST2 = 1;
     private static final int SESSION_STATE_RESPONSE2 = 2;
@@ -57,7 +51,7 @@ public class Security2 implements Security {
 
     private String userName;
 
-    private Cipher cipher;
+    private AesGcmSessionCipher sessionCipher;
     private SRP6ClientSession client;
 
     private BigInteger clientPublicKey = null;
@@ -71,16 +65,21 @@ public class Security2 implements Security {
      * Create Security 1 implementation
      */
     public Security2(String username, String password) {
+        this(username, password, new SRP6ClientSession());
+    }
 
-        userName = username;
-        Log.d(TAG, "User name : " + username + " password : " + password);
+    /***
+     * Create Security 2 implementation with SRP client session created in advance,
+     * which may have precomputed its client values.
+     * @see SRP6ClientSession#precomputeClientValues(SRP6CryptoParams)
+     */
+    public Security2(String username, String password, SRP6ClientSession session) {
 
-        try {
-            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            e.printStackTrace();
+        userName = username;
+        client = session;
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            client.setComputeExecutor(SRP6ClientSession.getDefaultComputeExecutor());
         }
-        client = new SRP6ClientSession();
         client.step1(username, password);
     }
 
@@ -210,53 +209,75 @@ public class Security2 implements Security {
             sharedKey = BigIntegerUtils.bigIntegerToBytes(client.K);
             key = Arrays.copyOfRange(sharedKey, 0, 32);
 
+            // Device nonce = IV
+            try {
+                sessionCipher = new AesGcmSessionCipher(key, deviceNonce);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Failed to create session cipher", e);
+            }
+
         } catch (InvalidProtocolBufferException e) {
             Log.e(TAG, e.getMessage());
         }
     }
 
+    @Override
+    public boolean usesSharedStreamCipher() {
+        return false;
+    }
+
     public byte[] encrypt(byte[] data) {
 
-        // Device nonce = IV
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec parameterSpec = new IvParameterSpec(deviceNonce);
         try {
-            this.cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, parameterSpec);
-        } catch (InvalidAlgorithmParameterException e) {
-            e.printStackTrace();
-        } catch (InvalidKeyException e) {
+            return sessionCipher.encrypt(data);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
         }
+        return null;
+    }
+
+    public byte[] decrypt(byte[] data) {
 
         try {
-            return this.cipher.doFinal(data);
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
+            return sessionCipher.decrypt(data);
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    public byte[] decrypt(byte[] data) {
+    /**
+     * Encrypt remaining bytes of src into dst without allocating output array.
+     * dst must have room for data and {@link #TAG_LENGTH} bytes of authentication tag.
+     *
+     * @param src Plain text.
+     * @param dst Buffer for cipher text.
+     * @return Number of bytes written to dst.
+     */
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
 
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec parameterSpec = new IvParameterSpec(deviceNonce);
         try {
-            this.cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, parameterSpec);
-        } catch (InvalidAlgorithmParameterException e) {
-            e.printStackTrace();
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
+            return sessionCipher.encrypt(src, dst);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to encrypt data", e);
         }
+    }
+
+    /**
+     * Decrypt remaining bytes of src into dst without allocating output array.
+     *
+     * @param src Cipher text followed by authentication tag.
+     * @param dst Buffer for plain text.
+     * @return Number of bytes written to dst.
+     */
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
 
         try {
-            return this.cipher.doFinal(data);
-        } catch (BadPaddingException e) {
-            e.printStackTrace();
-        } catch (IllegalBlockSizeException e) {
-            e.printStackTrace();
+            return sessionCipher.decrypt(src, dst);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt data", e);
         }
-        return null;
     }
 }
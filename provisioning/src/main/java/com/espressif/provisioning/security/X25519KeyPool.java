@@ -0,0 +1,140 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.security;
+
+import android.util.Log;
+
+import com.google.crypto.tink.subtle.X25519;
+
+import java.security.InvalidKeyException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pool of pre-generated ephemeral X25519 key pairs used by Security 1 handshake.
+ * Key pairs are generated on a background thread, so that session establishment does not
+ * compute them while building its first request. Every key pair is handed out only once.
+ * If the pool is empty, key pair is generated on the calling thread.
+ */
+public final class X25519KeyPool {
+
+    private static final String TAG = "Espressif::" + X25519KeyPool.class.getSimpleName();
+
+    private static final int POOL_SIZE = 2;
+
+    private static final X25519KeyPool instance = new X25519KeyPool(POOL_SIZE);
+
+    private final ArrayBlockingQueue<KeyPair> keyPairs;
+    private final AtomicBoolean isRefilling = new AtomicBoolean(false);
+    private final ExecutorService refillExecutor;
+
+    X25519KeyPool(int size) {
+
+        keyPairs = new ArrayBlockingQueue<>(size);
+        refillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "X25519KeyPool");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    public static X25519KeyPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start filling the pool in background. Can be called while connecting to the device,
+     * so that key pair is ready when session is established.
+     */
+    public void warmUp() {
+        refill();
+    }
+
+    /**
+     * Take a key pair out of the pool and start refilling it.
+     *
+     * @return Key pair which is not handed out to anyone else.
+     * @throws InvalidKeyException if key pair had to be generated and its generation failed.
+     */
+    KeyPair take() throws InvalidKeyException {
+
+        KeyPair keyPair = keyPairs.poll();
+        refill();
+        if (keyPair == null) {
+            Log.d(TAG, "Pool is empty, generate key pair");
+            keyPair = generate();
+        }
+        return keyPair;
+    }
+
+    int size() {
+        return keyPairs.size();
+    }
+
+    private void refill() {
+
+        if (keyPairs.remainingCapacity() == 0 || !isRefilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        refillExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                boolean isFilled = false;
+                try {
+                    while (keyPairs.remainingCapacity() > 0) {
+                        keyPairs.offer(generate());
+                    }
+                    isFilled = true;
+                } catch (InvalidKeyException e) {
+                    Log.e(TAG, "Failed to generate key pair : " + e.getMessage());
+                } finally {
+                    isRefilling.set(false);
+                }
+
+                // Key pair may have been taken after the loop ended.
+                if (isFilled) {
+                    refill();
+                }
+            }
+        });
+    }
+
+    private static KeyPair generate() throws InvalidKeyException {
+
+        byte[] privateKey = X25519.generatePrivateKey();
+        return new KeyPair(privateKey, X25519.publicFromPrivate(privateKey));
+    }
+
+    static final class KeyPair {
+
+        final byte[] privateKey;
+        final byte[] publicKey;
+
+        KeyPair(byte[] privateKey, byte[] publicKey) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+    }
+}
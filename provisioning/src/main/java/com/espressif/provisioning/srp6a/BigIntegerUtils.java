@@ -6,6 +6,7 @@ package com.espressif.provisioning.srp6a;
 
 
 import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.util.Arrays;
 
 
@@ -20,6 +21,13 @@ import java.util.Arrays;
  */
 public class BigIntegerUtils {
 
+
+	/**
+	 * Zero bytes for padding digest input, never modified.
+	 */
+	private static final byte[] ZEROS = new byte[128];
+
+
 	/**
 	 * Encodes the specified big integer into a hex string.
 	 *
@@ -85,6 +93,39 @@ public class BigIntegerUtils {
 		return bytes;
 	}
 
+	/**
+	 * Updates the digest with the bytes of a BigInteger as returned by
+	 * {@link #bigIntegerToBytes}, without copying them into a new array.
+	 *
+	 * @param digest     The digest to update. Must not be {@code null}.
+	 * @param bigInteger BigInteger, must not be null, should not be negative
+	 */
+	public static void updateDigest(final MessageDigest digest, final BigInteger bigInteger) {
+		updateDigest(digest, bigInteger, 0);
+	}
+
+	/**
+	 * Updates the digest with the bytes of a BigInteger as returned by
+	 * {@link #bigIntegerToBytes}, preceded by leading zeros up to the
+	 * specified length. The padding is not allocated, so the value is
+	 * hashed without copying it.
+	 *
+	 * @param digest     The digest to update. Must not be {@code null}.
+	 * @param bigInteger BigInteger, must not be null, should not be negative
+	 * @param length     The length to pad the value to. Values which are
+	 *                   longer are not truncated.
+	 */
+	public static void updateDigest(final MessageDigest digest, final BigInteger bigInteger, final int length) {
+		assert(bigInteger.signum() != -1); // NOSONAR
+		byte[] bytes = bigInteger.toByteArray();
+		int offset = bytes[0] == 0 ? 1 : 0;
+		int count = bytes.length - offset;
+		for (int padding = length - count; padding > 0; padding -= ZEROS.length) {
+			digest.update(ZEROS, 0, Math.min(padding, ZEROS.length));
+		}
+		digest.update(bytes, offset, count);
+	}
+
 	/**
 	 * Prevents instantiation.
 	 */
@@ -43,22 +43,10 @@ public class ClientSRP6Routines implements ClientEvidenceRoutine {
      */
     public BigInteger computeClientEvidence(SRP6CryptoParams cryptoParams, SRP6ClientEvidenceContext ctx) {
 
-        byte[] big_N = BigIntegerUtils.bigIntegerToBytes(cryptoParams.N);
-        byte[] big_g = BigIntegerUtils.bigIntegerToBytes(cryptoParams.g);
-
-        int padding = big_N.length - big_g.length;
-
-        digest.update(big_N);
+        digest.update(cryptoParams.getPaddedN());
         byte[] hn = digest.digest();
 
-        if (big_g.length < big_N.length) {
-
-            byte[] tmp = new byte[big_N.length];
-            System.arraycopy(big_g, 0, tmp, padding, big_g.length);
-            big_g = tmp;
-        }
-
-        digest.update(big_g);
+        digest.update(cryptoParams.getPaddedG());
         byte[] hg = digest.digest();
 
         byte[] c = new byte[hn.length];
@@ -72,10 +60,10 @@ public class ClientSRP6Routines implements ClientEvidenceRoutine {
 
         digest.update(c);
         digest.update(hi);
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.s));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.A));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.B));
-        digest.update(BigIntegerUtils.bigIntegerToBytes(ctx.K));
+        BigIntegerUtils.updateDigest(digest, ctx.s);
+        BigIntegerUtils.updateDigest(digest, ctx.A);
+        BigIntegerUtils.updateDigest(digest, ctx.B);
+        BigIntegerUtils.updateDigest(digest, ctx.K);
 
         return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
     }
@@ -0,0 +1,337 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.srp6a;
+
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Fixed-base modular exponentiation g^e (mod N) with precomputed tables,
+ * using the Lim-Lee comb method.
+ *
+ * <p>The exponent bits are arranged in {@code rows} rows of {@code a}
+ * columns, and the columns are split into {@code tables} blocks of
+ * {@code b} columns. Table {@code t} holds the products of
+ * g^(2^(i * a + t * b)) for every subset of rows {@code i}, so one
+ * exponentiation takes {@code b} squarings and at most
+ * {@code tables * b} multiplications, instead of one squaring per
+ * exponent bit. Reductions use the Barrett method with a precomputed
+ * reciprocal of N.
+ *
+ * <p>Tables for the 3072-bit group used by Security 2 are computed once
+ * per process, on a background thread. Until they are ready,
+ * {@link #modPow(BigInteger, BigInteger, BigInteger)} falls back to
+ * {@link BigInteger#modPow}, so the first handshake is not delayed by
+ * the table computation.
+ */
+public final class FixedBaseModPow {
+
+
+	/**
+	 * Whether the tables for the 3072-bit group are computed.
+	 */
+	private static volatile boolean isGroup3072Ready = false;
+
+
+	/**
+	 * Whether computation of the tables for the 3072-bit group has been
+	 * started.
+	 */
+	private static final AtomicBoolean isGroup3072Requested = new AtomicBoolean(false);
+
+
+	/**
+	 * The base 'g'.
+	 */
+	private final BigInteger g;
+
+
+	/**
+	 * The modulus 'N'.
+	 */
+	private final BigInteger N;
+
+
+	/**
+	 * The maximum supported exponent bit length.
+	 */
+	private final int maxExponentBits;
+
+
+	/**
+	 * Comb parameters, see class description.
+	 */
+	private final int rows;
+	private final int columns;
+	private final int blockColumns;
+	private final int tableCount;
+
+
+	/**
+	 * Precomputed powers, indexed by table and row subset.
+	 */
+	private final BigInteger[][] tables;
+
+
+	/**
+	 * Barrett reduction parameters.
+	 */
+	private final int modulusBits;
+	private final BigInteger mu;
+
+
+	/**
+	 * Creates a new fixed-base exponentiation engine and computes its
+	 * tables.
+	 *
+	 * @param g               The base. Must be in the range [1, N-1].
+	 * @param N               The odd modulus. Must not be {@code null}.
+	 * @param maxExponentBits The maximum bit length of exponents.
+	 * @param rows            The number of comb rows, each table has
+	 *                        2^rows entries.
+	 * @param tableCount      The number of tables.
+	 */
+	public FixedBaseModPow(final BigInteger g,
+	                       final BigInteger N,
+	                       final int maxExponentBits,
+	                       final int rows,
+	                       final int tableCount) {
+
+		if (g.signum() <= 0 || g.compareTo(N) >= 0)
+			throw new IllegalArgumentException("The base must be in the range [1, N-1]");
+
+		if (rows < 1 || rows > 16 || tableCount < 1 || maxExponentBits < 1)
+			throw new IllegalArgumentException("Invalid comb parameters");
+
+		this.g = g;
+		this.N = N;
+		this.maxExponentBits = maxExponentBits;
+		this.rows = rows;
+		this.tableCount = tableCount;
+		columns = (maxExponentBits + rows - 1) / rows;
+		blockColumns = (columns + tableCount - 1) / tableCount;
+
+		modulusBits = N.bitLength();
+		mu = BigInteger.ONE.shiftLeft(2 * modulusBits).divide(N);
+
+		tables = new BigInteger[tableCount][];
+
+		// g^(2^(i * a + t * b)) for row i and table t
+		BigInteger[] rowBases = new BigInteger[rows];
+		rowBases[0] = g;
+		for (int i = 1; i < rows; i++)
+			rowBases[i] = square(rowBases[i - 1], columns);
+
+		for (int t = 0; t < tableCount; t++) {
+
+			if (t > 0) {
+				for (int i = 0; i < rows; i++)
+					rowBases[i] = square(rowBases[i], blockColumns);
+			}
+
+			BigInteger[] table = new BigInteger[1 << rows];
+			table[0] = BigInteger.ONE;
+			for (int j = 1; j < table.length; j++) {
+				int lowestRow = Integer.numberOfTrailingZeros(j);
+				int otherRows = j & (j - 1);
+				table[j] = otherRows == 0 ? rowBases[lowestRow] : reduce(table[otherRows].multiply(rowBases[lowestRow]));
+			}
+			tables[t] = table;
+		}
+	}
+
+
+	/**
+	 * Returns the base 'g'.
+	 *
+	 * @return The base.
+	 */
+	public BigInteger getBase() {
+
+		return g;
+	}
+
+
+	/**
+	 * Returns the modulus 'N'.
+	 *
+	 * @return The modulus.
+	 */
+	public BigInteger getModulus() {
+
+		return N;
+	}
+
+
+	/**
+	 * Returns the maximum bit length of exponents supported by the
+	 * tables.
+	 *
+	 * @return The maximum exponent bit length.
+	 */
+	public int getMaxExponentBits() {
+
+		return maxExponentBits;
+	}
+
+
+	/**
+	 * Computes g^e (mod N).
+	 *
+	 * @param e The exponent. Must not be negative or longer than
+	 *          {@link #getMaxExponentBits()}.
+	 *
+	 * @return The resulting power.
+	 */
+	public BigInteger pow(final BigInteger e) {
+
+		if (e.signum() < 0 || e.bitLength() > maxExponentBits)
+			throw new IllegalArgumentException("Exponent out of range");
+
+		BigInteger result = BigInteger.ONE;
+
+		for (int column = blockColumns - 1; column >= 0; column--) {
+
+			result = reduce(result.multiply(result));
+
+			for (int t = tableCount - 1; t >= 0; t--) {
+
+				int bit = t * blockColumns + column;
+
+				if (bit >= columns)
+					continue;
+
+				int index = 0;
+				for (int i = 0; i < rows; i++) {
+					if (e.testBit(i * columns + bit))
+						index |= 1 << i;
+				}
+
+				if (index != 0)
+					result = reduce(result.multiply(tables[t][index]));
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Squares the specified value {@code count} times.
+	 */
+	private BigInteger square(final BigInteger value, final int count) {
+
+		BigInteger result = value;
+		for (int i = 0; i < count; i++)
+			result = reduce(result.multiply(result));
+		return result;
+	}
+
+
+	/**
+	 * Reduces x in the range [0, N^2) modulo N with the Barrett method.
+	 */
+	private BigInteger reduce(final BigInteger x) {
+
+		BigInteger q = x.shiftRight(modulusBits - 1).multiply(mu).shiftRight(modulusBits + 1);
+		BigInteger r = x.subtract(q.multiply(N));
+		while (r.compareTo(N) >= 0)
+			r = r.subtract(N);
+		return r;
+	}
+
+
+	/**
+	 * Computes g^e (mod N), with precomputed tables if available for
+	 * 'N', 'g' and the size of the exponent, else with
+	 * {@link BigInteger#modPow}.
+	 *
+	 * @param g The base. Must not be {@code null}.
+	 * @param e The exponent. Must not be {@code null}.
+	 * @param N The modulus. Must not be {@code null}.
+	 *
+	 * @return The resulting power.
+	 */
+	public static BigInteger modPow(final BigInteger g,
+	                                final BigInteger e,
+	                                final BigInteger N) {
+
+		if (e.signum() >= 0 && g.equals(SRP6CryptoParams.g_large) && N.equals(SRP6CryptoParams.N_3072)) {
+
+			if (!isGroup3072Ready) {
+				precomputeGroup3072InBackground();
+				return g.modPow(e, N);
+			}
+
+			if (e.bitLength() <= Group3072.SHORT_EXPONENT.maxExponentBits)
+				return Group3072.SHORT_EXPONENT.pow(e);
+
+			if (e.bitLength() <= Group3072.FULL_EXPONENT.maxExponentBits)
+				return Group3072.FULL_EXPONENT.pow(e);
+		}
+
+		return g.modPow(e, N);
+	}
+
+
+	/**
+	 * Computes the tables for the 3072-bit group on the calling thread,
+	 * if not computed yet.
+	 */
+	public static void precomputeGroup3072() {
+
+		Group3072.FULL_EXPONENT.getBase();
+		isGroup3072Ready = true;
+	}
+
+
+	/**
+	 * Starts computation of the tables for the 3072-bit group on a
+	 * background thread, if not started yet. Can be called ahead of the
+	 * handshake, e.g. while connecting to the device.
+	 */
+	public static void precomputeGroup3072InBackground() {
+
+		if (isGroup3072Ready || !isGroup3072Requested.compareAndSet(false, true))
+			return;
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				precomputeGroup3072();
+			}
+		}, "FixedBaseModPow");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+
+	/**
+	 * Lazily computed tables for N_3072 and g_large. Full exponents are
+	 * private values 'a' of N size, short exponents are password keys 'x'
+	 * of SHA-512 size.
+	 */
+	private static final class Group3072 {
+
+		static final FixedBaseModPow FULL_EXPONENT = new FixedBaseModPow(
+			SRP6CryptoParams.g_large, SRP6CryptoParams.N_3072, 3072, 8, 2);
+
+		static final FixedBaseModPow SHORT_EXPONENT = new FixedBaseModPow(
+			SRP6CryptoParams.g_large, SRP6CryptoParams.N_3072, 512, 8, 1);
+	}
+}
@@ -0,0 +1,369 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.srp6a;
+
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Generator of salt 's' and password verifier 'v' pairs for batches of
+ * devices, e.g. on a factory line where every device gets its own proof of
+ * possession.
+ *
+ * <p>Verifiers are computed with the password key routine of Security 2,
+ * x = H(s | H(I | ":" | P)), on a fork/join pool, so that a batch uses all
+ * its threads. Salts never start with a zero byte, as the client session
+ * hashes the salt without leading zeros.
+ *
+ * <p>Large batches are read and written in chunks, so that results are
+ * streamed to the writer as they are computed and an interrupted batch can
+ * be resumed by skipping the devices already written.
+ */
+public class SRP6BatchVerifierGenerator {
+
+
+	/**
+	 * The default salt length in bytes.
+	 */
+	public static final int DEFAULT_SALT_LENGTH = 16;
+
+
+	/**
+	 * The number of devices computed and written together when streaming.
+	 */
+	static final int CHUNK_SIZE = 256;
+
+
+	/**
+	 * The number of devices below which a task is not split further.
+	 */
+	private static final int SPLIT_THRESHOLD = 4;
+
+
+	/**
+	 * The credentials of a device.
+	 */
+	public static final class Credentials {
+
+
+		/**
+		 * The device identifier, unique within a batch.
+		 */
+		public final String deviceID;
+
+
+		/**
+		 * The user identity 'I'.
+		 */
+		public final String userID;
+
+
+		/**
+		 * The password 'P', i.e. the proof of possession of the device.
+		 */
+		public final String password;
+
+
+		/**
+		 * Creates new device credentials.
+		 *
+		 * @param deviceID The device identifier. Must not be
+		 *                 {@code null}.
+		 * @param userID   The user identity 'I'. Must not be
+		 *                 {@code null}.
+		 * @param password The password 'P'. Must not be {@code null}.
+		 */
+		public Credentials(final String deviceID, final String userID, final String password) {
+
+			if (deviceID == null || userID == null || password == null)
+				throw new IllegalArgumentException("The device credentials must not be null");
+
+			this.deviceID = deviceID;
+			this.userID = userID;
+			this.password = password;
+		}
+	}
+
+
+	/**
+	 * The generated salt and verifier of a device.
+	 */
+	public static final class Result {
+
+
+		/**
+		 * The device identifier.
+		 */
+		public final String deviceID;
+
+
+		/**
+		 * The salt 's'.
+		 */
+		public final byte[] salt;
+
+
+		/**
+		 * The verifier 'v'.
+		 */
+		public final BigInteger verifier;
+
+
+		Result(final String deviceID, final byte[] salt, final BigInteger verifier) {
+
+			this.deviceID = deviceID;
+			this.salt = salt;
+			this.verifier = verifier;
+		}
+	}
+
+
+	/**
+	 * Destination of generated results.
+	 */
+	public interface ResultWriter {
+
+
+		/**
+		 * Writes the results of a chunk of devices, in input order.
+		 *
+		 * @param results The results.
+		 *
+		 * @throws IOException If writing failed. Generation stops.
+		 */
+		void write(final List<Result> results) throws IOException;
+	}
+
+
+	/**
+	 * The crypto parameters.
+	 */
+	private final SRP6CryptoParams config;
+
+
+	/**
+	 * The pool to compute verifiers on.
+	 */
+	private final ForkJoinPool pool;
+
+
+	/**
+	 * The salt length in bytes.
+	 */
+	private final int saltLength;
+
+
+	/**
+	 * The verifier generator, safe for use by several threads.
+	 */
+	private final SRP6VerifierGenerator generator;
+
+
+	/**
+	 * The source of salts.
+	 */
+	private final SecureRandom random = new SecureRandom();
+
+
+	/**
+	 * Creates a new batch verifier generator with 16-byte salts.
+	 *
+	 * @param config The SRP-6a crypto parameters. Must not be
+	 *               {@code null}.
+	 * @param pool   The pool to compute verifiers on. Must not be
+	 *               {@code null}.
+	 */
+	public SRP6BatchVerifierGenerator(final SRP6CryptoParams config, final ForkJoinPool pool) {
+
+		this(config, pool, DEFAULT_SALT_LENGTH);
+	}
+
+
+	/**
+	 * Creates a new batch verifier generator.
+	 *
+	 * @param config     The SRP-6a crypto parameters. Must not be
+	 *                   {@code null}.
+	 * @param pool       The pool to compute verifiers on. Must not be
+	 *                   {@code null}.
+	 * @param saltLength The salt length in bytes. Must be positive.
+	 */
+	public SRP6BatchVerifierGenerator(final SRP6CryptoParams config, final ForkJoinPool pool, final int saltLength) {
+
+		if (config == null)
+			throw new IllegalArgumentException("The SRP-6a crypto parameters must not be null");
+
+		if (pool == null)
+			throw new IllegalArgumentException("The pool must not be null");
+
+		if (saltLength < 1)
+			throw new IllegalArgumentException("The salt length must be positive");
+
+		this.config = config;
+		this.pool = pool;
+		this.saltLength = saltLength;
+		generator = new SRP6VerifierGenerator(config);
+		generator.setXRoutine(new XRoutineWithUserIdentity());
+	}
+
+
+	/**
+	 * Generates the salts and verifiers of the specified devices.
+	 *
+	 * @param batch The device credentials. Must not be {@code null}.
+	 *
+	 * @return The results, in the order of the credentials.
+	 */
+	public List<Result> generate(final List<Credentials> batch) {
+
+		Result[] results = new Result[batch.size()];
+		pool.invoke(new GenerateTask(batch, results, 0, results.length));
+		return Arrays.asList(results);
+	}
+
+
+	/**
+	 * Generates the salts and verifiers of the specified devices and
+	 * streams them to the writer in chunks. Devices which are listed in
+	 * {@code skipDeviceIDs}, e.g. the ones written by an interrupted
+	 * run, are skipped.
+	 *
+	 * @param input         The device credentials. Must not be
+	 *                      {@code null}.
+	 * @param skipDeviceIDs The identifiers of the devices to skip. Must
+	 *                      not be {@code null}.
+	 * @param writer        The result writer. Must not be {@code null}.
+	 *
+	 * @return The number of generated results.
+	 *
+	 * @throws IOException If the writer failed.
+	 */
+	public int generate(final Iterator<Credentials> input,
+	                    final Set<String> skipDeviceIDs,
+	                    final ResultWriter writer)
+		throws IOException {
+
+		int count = 0;
+		List<Credentials> chunk = new ArrayList<Credentials>(CHUNK_SIZE);
+
+		while (input.hasNext()) {
+
+			Credentials credentials = input.next();
+
+			if (skipDeviceIDs.contains(credentials.deviceID))
+				continue;
+
+			chunk.add(credentials);
+
+			if (chunk.size() == CHUNK_SIZE) {
+				writer.write(generate(chunk));
+				count += chunk.size();
+				chunk = new ArrayList<Credentials>(CHUNK_SIZE);
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			writer.write(generate(chunk));
+			count += chunk.size();
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Generates the salt and verifier of a device.
+	 */
+	private Result generate(final Credentials credentials) {
+
+		byte[] salt;
+
+		do {
+			salt = generator.generateRandomSalt(saltLength, random);
+		} while (salt[0] == 0);
+
+		BigInteger verifier = generator.generateVerifier(
+			BigIntegerUtils.bigIntegerFromBytes(salt), credentials.userID, credentials.password);
+
+		return new Result(credentials.deviceID, salt, verifier);
+	}
+
+
+	/**
+	 * Returns the crypto parameters of the verifiers.
+	 *
+	 * @return The crypto parameters.
+	 */
+	public SRP6CryptoParams getCryptoParams() {
+
+		return config;
+	}
+
+
+	/**
+	 * Computes the results of a range of devices, splitting it in halves
+	 * for other threads of the pool.
+	 */
+	private final class GenerateTask extends RecursiveAction {
+
+
+		/**
+		 * Serializable class version number
+		 */
+		private static final long serialVersionUID = 6385126040829472093L;
+
+
+		private final List<Credentials> batch;
+		private final Result[] results;
+		private final int from;
+		private final int to;
+
+
+		GenerateTask(final List<Credentials> batch, final Result[] results, final int from, final int to) {
+
+			this.batch = batch;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+
+		@Override
+		protected void compute() {
+
+			if (to - from <= SPLIT_THRESHOLD) {
+
+				for (int i = from; i < to; i++)
+					results[i] = generate(batch.get(i));
+
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new GenerateTask(batch, results, from, middle),
+			          new GenerateTask(batch, results, middle, to));
+		}
+	}
+}
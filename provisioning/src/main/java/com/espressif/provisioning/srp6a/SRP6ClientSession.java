@@ -4,12 +4,21 @@
 
 package com.espressif.provisioning.srp6a;
 
-import android.util.Log;
-
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -47,6 +56,21 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
     private static final long serialVersionUID = -479060216624675478L;
 
 
+    /**
+     * The time to wait for values computed in the background, in
+     * milliseconds. If they are not ready by then, e.g. because the
+     * executor is busy with other tasks, they are computed on the calling
+     * thread.
+     */
+    static final long BACKGROUND_VALUES_TIMEOUT_MILLIS = 1000;
+
+
+    /**
+     * The number of threads of the default compute executor.
+     */
+    static final int COMPUTE_THREADS = 2;
+
+
     /**
      * Enumerates the states of a client-side SRP-6a authentication
      * session.
@@ -118,6 +142,38 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
     private XRoutine xRoutine = null;
 
 
+    /**
+     * The crypto parameters of the precomputed client values.
+     */
+    private transient SRP6CryptoParams precomputedConfig = null;
+
+
+    /**
+     * The precomputed client private value 'a' and public value 'A',
+     * {@code null} if not precomputed or already used.
+     */
+    private transient Future<BigInteger[]> precomputedValues = null;
+
+
+    /**
+     * Executor for computation of 'x' and g^x in parallel with the other
+     * step 2 values, {@code null} to compute them on the calling thread.
+     */
+    private transient ExecutorService computeExecutor = null;
+
+
+    /**
+     * Shared executor for background computations, created on first use.
+     */
+    private static ExecutorService defaultExecutor = null;
+
+
+    /**
+     * Shared executor for the step 2 computations, created on first use.
+     */
+    private static ExecutorService defaultComputeExecutor = null;
+
+
     /**
      * Creates a new client-side SRP-6a authentication session and sets its
      * state to {@link State#INIT}.
@@ -211,6 +267,172 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         updateLastActivityTime();
     }
 
+    /**
+     * Starts computation of the client private value 'a' and public value
+     * 'A' on a background thread, so that {@link #getClientPublicKey}
+     * does not have to compute them on the critical path of the
+     * handshake. Can be called in {@link State#INIT} or
+     * {@link State#STEP_1} state, e.g. when the device is selected and
+     * before the connection with it is set up. The precomputed values are
+     * used only once.
+     *
+     * @param config The SRP-6a crypto parameters which will be used for
+     *               the handshake. Must not be {@code null}.
+     */
+    public void precomputeClientValues(final SRP6CryptoParams config) {
+
+        precomputeClientValues(config, getDefaultExecutor());
+    }
+
+
+    /**
+     * Starts computation of the client private value 'a' and public value
+     * 'A' on the specified executor, see
+     * {@link #precomputeClientValues(SRP6CryptoParams)}.
+     *
+     * @param config   The SRP-6a crypto parameters which will be used for
+     *                 the handshake. Must not be {@code null}.
+     * @param executor The executor to compute the values on. Must not be
+     *                 {@code null}.
+     */
+    public synchronized void precomputeClientValues(final SRP6CryptoParams config,
+                                                    final ExecutorService executor) {
+
+        if (config == null)
+            throw new IllegalArgumentException("The SRP-6a crypto parameters must not be null");
+
+        if (state != State.INIT && state != State.STEP_1)
+            throw new IllegalStateException("State violation: Session must be in INIT or STEP_1 state");
+
+        if (precomputedValues != null)
+            precomputedValues.cancel(false);
+
+        precomputedConfig = config;
+        precomputedValues = executor.submit(new Callable<BigInteger[]>() {
+
+            @Override
+            public BigInteger[] call() {
+
+                BigInteger a = srp6Routines.generatePrivateValue(config.N, random);
+                BigInteger A = srp6Routines.computePublicClientValue(config.N, config.g, a);
+                return new BigInteger[]{a, A};
+            }
+        });
+    }
+
+
+    /**
+     * Takes the precomputed client values if they match the specified
+     * crypto parameters, waiting for their computation for at most
+     * {@link #BACKGROUND_VALUES_TIMEOUT_MILLIS}.
+     *
+     * @return The client private value 'a' and public value 'A', or
+     * {@code null} if not precomputed, not ready in time or their
+     * computation failed.
+     */
+    private synchronized BigInteger[] takePrecomputedClientValues(final SRP6CryptoParams config) {
+
+        Future<BigInteger[]> values = precomputedValues;
+        SRP6CryptoParams valuesConfig = precomputedConfig;
+        precomputedValues = null;
+        precomputedConfig = null;
+
+        if (values == null || !valuesConfig.N.equals(config.N) || !valuesConfig.g.equals(config.g))
+            return null;
+
+        try {
+            return values.get(BACKGROUND_VALUES_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            values.cancel(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+
+    /**
+     * Sets the executor to compute the password key 'x' and g^x on in
+     * {@link #step2_for_client_evidence}, while the calling thread computes
+     * 'u'. The results are then joined to compute the session key 'S'.
+     * This shortens step 2 on multi-core devices. If the executor rejects
+     * the task or its result is not ready within
+     * {@link #BACKGROUND_VALUES_TIMEOUT_MILLIS}, the values are computed on
+     * the calling thread.
+     *
+     * @see #getDefaultComputeExecutor()
+     *
+     * @param executor The executor, {@code null} to compute all values on
+     *                 the calling thread (the default).
+     */
+    public void setComputeExecutor(final ExecutorService executor) {
+
+        computeExecutor = executor;
+    }
+
+
+    /**
+     * Returns the shared executor used for background computations of
+     * client sessions, such as
+     * {@link #precomputeClientValues(SRP6CryptoParams)}. It runs one daemon
+     * thread.
+     *
+     * @return The shared executor.
+     */
+    public static synchronized ExecutorService getDefaultExecutor() {
+
+        if (defaultExecutor == null) {
+
+            defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "SRP6ClientSession-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+
+    /**
+     * Returns the shared executor for the step 2 computations of client
+     * sessions, see {@link #setComputeExecutor}. It is separate from
+     * {@link #getDefaultExecutor()}, so that step 2 does not wait for
+     * precomputations of other sessions. It runs up to
+     * {@link #COMPUTE_THREADS} daemon threads and rejects tasks when all
+     * of them are busy, so that the values are computed on the calling
+     * thread instead of waiting in a queue.
+     *
+     * @return The shared compute executor.
+     */
+    public static synchronized ExecutorService getDefaultComputeExecutor() {
+
+        if (defaultComputeExecutor == null) {
+
+            defaultComputeExecutor = new ThreadPoolExecutor(0, COMPUTE_THREADS, 30, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "SRP6ClientSession-compute");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultComputeExecutor;
+    }
+
+
     /**
      * This method is used to generate client public key 'A'.
      * [Note : Customised 'step2' method into 2 methods.]
@@ -228,7 +450,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -241,7 +463,15 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         if (hasTimedOut())
             throw new SRP6Exception("Session timeout", SRP6Exception.CauseType.TIMEOUT);
 
-        // Generate client private and public values
+        // Generate client private and public values, unless precomputed
+        BigInteger[] precomputed = takePrecomputedClientValues(config);
+
+        if (precomputed != null) {
+            a = precomputed[0];
+            A = precomputed[1];
+            return A;
+        }
+
         a = srp6Routines.generatePrivateValue(config.N, random);
         digest.reset();
 
@@ -273,7 +503,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -309,24 +539,32 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         // Use xRoutine with user identity.
         xRoutine = new XRoutineWithUserIdentity();
 
-        // Compute the password key 'x'
-        if (xRoutine != null) {
+        // Compute the password key 'x' and g^x, in parallel with 'u' if
+        // a compute executor is set
+        Future<BigInteger[]> passwordValues = null;
 
-            // With custom routine
-            x = xRoutine.computeX(config.getMessageDigestInstance(),
-                    BigIntegerUtils.bigIntegerToBytes(s),
-                    userID.getBytes(Charset.forName("UTF-8")),
-                    password.getBytes(Charset.forName("UTF-8")));
+        if (computeExecutor != null) {
 
-        } else {
-            // With default routine
-            x = srp6Routines.computeX(digest, BigIntegerUtils.bigIntegerToBytes(s), password.getBytes(Charset.forName("UTF-8")));
-            digest.reset();
+            try {
+                passwordValues = computeExecutor.submit(new Callable<BigInteger[]>() {
+
+                    @Override
+                    public BigInteger[] call() {
+
+                        BigInteger x = computePasswordKey(config.getMessageDigestInstance());
+                        return new BigInteger[]{x, FixedBaseModPow.modPow(config.g, x, config.N)};
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                passwordValues = null;
+            }
         }
 
+        if (passwordValues == null)
+            x = computePasswordKey(digest);
+
         // Compute the session key
-        k = srp6Routines.computeK(digest, config.N, config.g);
-        digest.reset();
+        k = config.getK();
 
         if (hashedKeysRoutine != null) {
             URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -336,12 +574,20 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
             digest.reset();
         }
 
-        S = srp6Routines.computeSessionKey(config.N, config.g, k, x, u, a, B);
+        BigInteger[] joinedPasswordValues = join(passwordValues);
+
+        if (joinedPasswordValues != null) {
+            x = joinedPasswordValues[0];
+            S = srp6Routines.computeClientSessionKey(config.N, k, x, joinedPasswordValues[1], u, a, B);
+        } else {
+            if (passwordValues != null)
+                x = computePasswordKey(digest);
+            S = srp6Routines.computeSessionKey(config.N, config.g, k, x, u, a, B);
+        }
         K = srp6Routines.computeSharedSessionKey(digest, S);
-        Log.d("SRP6aClient", "Shared session key generated");
 
         // Set custom routine (for Espressif devices) to compute client evidence.
-        ClientSRP6Routines clientSRP6Routines = new ClientSRP6Routines(digest);
+        ClientSRP6Routines clientSRP6Routines = new ClientSRP6Routines(config.getMessageDigestInstance());
         setClientEvidenceRoutine(clientSRP6Routines);
 
         // Compute the client evidence message
@@ -366,6 +612,61 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
     }
 
 
+    /**
+     * Computes the password key 'x' from the salt, user identity and
+     * password of this session.
+     *
+     * @param digest The hash function 'H', used only by the calling
+     *               thread.
+     * @return The password key 'x'.
+     */
+    private BigInteger computePasswordKey(final MessageDigest digest) {
+
+        if (xRoutine != null) {
+
+            // With custom routine
+            return xRoutine.computeX(digest,
+                    BigIntegerUtils.bigIntegerToBytes(s),
+                    userID.getBytes(Charset.forName("UTF-8")),
+                    password.getBytes(Charset.forName("UTF-8")));
+
+        } else {
+            // With default routine
+            BigInteger x = srp6Routines.computeX(digest, BigIntegerUtils.bigIntegerToBytes(s), password.getBytes(Charset.forName("UTF-8")));
+            digest.reset();
+            return x;
+        }
+    }
+
+
+    /**
+     * Waits for values computed on the compute executor for at most
+     * {@link #BACKGROUND_VALUES_TIMEOUT_MILLIS}.
+     *
+     * @return The values, or {@code null} if not computed in parallel, not
+     * ready in time or their computation failed.
+     */
+    private static BigInteger[] join(final Future<BigInteger[]> values) {
+
+        if (values == null)
+            return null;
+
+        try {
+            return values.get(BACKGROUND_VALUES_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            values.cancel(false);
+        } catch (InterruptedException e) {
+            values.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+
     /**
      * Receives the password salt 's' and public value 'B' from the server.
      * The SRP-6a crypto parameters are also set. The session is incremented
@@ -398,7 +699,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
         this.config = config;
 
-        MessageDigest digest = config.getMessageDigestInstance();
+        MessageDigest digest = config.getThreadMessageDigest();
 
         if (digest == null)
             throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
@@ -454,8 +755,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
 
 
         // Compute the session key
-        k = srp6Routines.computeK(digest, config.N, config.g);
-        digest.reset();
+        k = config.getK();
 
         if (hashedKeysRoutine != null) {
             URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -539,7 +839,7 @@ public class SRP6ClientSession extends SRP6Session implements Serializable {
         } else {
             // Pass shared session key "K" instead of "S" to compute server evidence for Espressif devices
             // With default routine
-            MessageDigest digest = config.getMessageDigestInstance();
+            MessageDigest digest = config.getThreadMessageDigest();
             computedM2 = srp6Routines.computeServerEvidence(digest, A, M1, K);
         }
 
@@ -9,6 +9,8 @@ import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -24,6 +26,10 @@ import java.security.NoSuchAlgorithmException;
  *
  * <p>For convenience this class includes a set of precomputed parameters.
  *
+ * <p>Instances are immutable. The values derived from 'N' and 'g', such as
+ * the multiplier 'k', are computed once on creation, and instances for the
+ * precomputed parameters are shared, see {@link #getInstance(int, String)}.
+ *
  * @author Vladimir Dzhuvinov
  * @author Bernard Wittwer
  */
@@ -142,6 +148,44 @@ public class SRP6CryptoParams implements Serializable {
 	public final String H;
 
 
+	/**
+	 * The shared instances for the precomputed parameters, keyed by
+	 * bitsize and hash algorithm.
+	 */
+	private static final ConcurrentMap<String,SRP6CryptoParams> instances =
+		new ConcurrentHashMap<String,SRP6CryptoParams>();
+
+
+	/**
+	 * The byte length of 'N', which is the length of padded values.
+	 */
+	private final transient int padLength;
+
+
+	/**
+	 * 'N' as unsigned byte array.
+	 */
+	private final transient byte[] paddedN;
+
+
+	/**
+	 * 'g' as unsigned byte array padded to the length of 'N'.
+	 */
+	private final transient byte[] paddedG;
+
+
+	/**
+	 * The multiplier k = H(N | PAD(g)).
+	 */
+	private final transient BigInteger k;
+
+
+	/**
+	 * The message digest instances for 'H', one per thread.
+	 */
+	private final transient ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>();
+
+
 	/**
 	 * Returns an SRP-6a crypto parameters instance with precomputed 'N'
 	 * and 'g' values and the specified hash algorithm 'H'.
@@ -154,37 +198,59 @@ public class SRP6CryptoParams implements Serializable {
 	 *
 	 * @return The matching SRP-6a crypto parameters instance, or
 	 *         {@code null} if no matching constants or hash algorithm
-	 *         provider could be found.
+	 *         provider could be found. The instance is shared by all
+	 *         callers requesting the same parameters.
 	 */
 	public static SRP6CryptoParams getInstance(final int bitsize, final String H) {
 
 		if (H == null || H.isEmpty())
 			throw new IllegalArgumentException("Undefined hash algorithm 'H'");
 
+		final String key = bitsize + ":" + H;
+
+		SRP6CryptoParams params = instances.get(key);
+
+		if (params != null)
+			return params;
+
 		switch (bitsize) {
 			case 256:
-				return new SRP6CryptoParams(N_256, g_common, H);
+				params = new SRP6CryptoParams(N_256, g_common, H);
+				break;
 			case 512:
-				return new SRP6CryptoParams(N_512, g_common, H);
+				params = new SRP6CryptoParams(N_512, g_common, H);
+				break;
 			case 768:
-				return new SRP6CryptoParams(N_768, g_common, H);
+				params = new SRP6CryptoParams(N_768, g_common, H);
+				break;
 			case 1024:
-				return new SRP6CryptoParams(N_1024, g_common, H);
+				params = new SRP6CryptoParams(N_1024, g_common, H);
+				break;
 			case 1536:
-				return new SRP6CryptoParams(N_1536, g_common, H);
+				params = new SRP6CryptoParams(N_1536, g_common, H);
+				break;
 			case 2048:
-				return new SRP6CryptoParams(N_2048, g_common, H);
+				params = new SRP6CryptoParams(N_2048, g_common, H);
+				break;
 			case 3072:
-				return new SRP6CryptoParams(N_3072, g_large, H);
+				params = new SRP6CryptoParams(N_3072, g_large, H);
+				break;
 			case 4096:
-				return new SRP6CryptoParams(N_4096, g_large, H);
+				params = new SRP6CryptoParams(N_4096, g_large, H);
+				break;
 			case 6144:
-				return new SRP6CryptoParams(N_6144, g_large, H);
+				params = new SRP6CryptoParams(N_6144, g_large, H);
+				break;
 			case 8192:
-				return new SRP6CryptoParams(N_8192, g_x_large, H);
+				params = new SRP6CryptoParams(N_8192, g_x_large, H);
+				break;
 			default:
 				return null;
 		}
+
+		SRP6CryptoParams existing = instances.putIfAbsent(key, params);
+
+		return existing != null ? existing : params;
 	}
 
 
@@ -267,6 +333,82 @@ public class SRP6CryptoParams implements Serializable {
 			throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + H);
 
 		this.H = H;
+
+		paddedN = BigIntegerUtils.bigIntegerToBytes(N);
+		padLength = paddedN.length;
+
+		byte[] gBytes = BigIntegerUtils.bigIntegerToBytes(g);
+
+		if (gBytes.length < padLength) {
+
+			paddedG = new byte[padLength];
+			System.arraycopy(gBytes, 0, paddedG, padLength - gBytes.length, gBytes.length);
+		} else {
+			paddedG = gBytes;
+		}
+
+		MessageDigest digest = getThreadMessageDigest();
+		digest.update(paddedN);
+		digest.update(paddedG);
+		k = BigIntegerUtils.bigIntegerFromBytes(digest.digest());
+	}
+
+
+	/**
+	 * Restores the derived values of a deserialised instance.
+	 *
+	 * @return The equivalent crypto parameters instance.
+	 */
+	private Object readResolve() {
+
+		return new SRP6CryptoParams(N, g, H);
+	}
+
+
+	/**
+	 * Returns the SRP-6 multiplier k = H(N | PAD(g)), as computed by
+	 * {@link SRP6Routines#computeK}.
+	 *
+	 * @return The multiplier 'k'.
+	 */
+	public BigInteger getK() {
+
+		return k;
+	}
+
+
+	/**
+	 * Returns the byte length of 'N', to which values are padded.
+	 *
+	 * @return The pad length.
+	 */
+	public int getPadLength() {
+
+		return padLength;
+	}
+
+
+	/**
+	 * Returns 'N' as unsigned byte array. The array is shared and must not
+	 * be modified.
+	 *
+	 * @return The bytes of 'N'.
+	 */
+	byte[] getPaddedN() {
+
+		return paddedN;
+	}
+
+
+	/**
+	 * Returns 'g' as unsigned byte array padded with leading zeros to the
+	 * length of 'N'. The array is shared and must not be modified.
+	 *
+	 * @return The padded bytes of 'g'.
+	 */
+	byte[] getPaddedG() {
+
+		return paddedG;
 	}
 
 
@@ -287,4 +429,34 @@ public class SRP6CryptoParams implements Serializable {
 			return null;
 		}
 	}
+
+
+	/**
+	 * Returns the message digest instance of the calling thread for the
+	 * hash algorithm 'H', in its reset state. The instance is created once
+	 * per thread, so it must be used only by the calling thread, and a
+	 * computation in progress with it must be finished before calling this
+	 * method again. Routines which may be supplied by the application get
+	 * a new instance from {@link #getMessageDigestInstance}.
+	 *
+	 * @return The message digest instance of the calling thread or
+	 *         {@code null} if not supported by the default security
+	 *         provider of the underlying Java runtime.
+	 */
+	MessageDigest getThreadMessageDigest() {
+
+		MessageDigest digest = digests.get();
+
+		if (digest != null) {
+			digest.reset();
+			return digest;
+		}
+
+		digest = getMessageDigestInstance();
+
+		if (digest != null)
+			digests.set(digest);
+
+		return digest;
+	}
 }
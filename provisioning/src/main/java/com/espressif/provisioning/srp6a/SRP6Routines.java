@@ -123,7 +123,7 @@ public class SRP6Routines implements Serializable {
 	                                         final BigInteger g,
 	                                         final BigInteger x) {
 
-		return g.modPow(x, N);
+		return FixedBaseModPow.modPow(g, x, N);
 	}
 
 	/**
@@ -168,7 +168,7 @@ public class SRP6Routines implements Serializable {
 	                                                  final BigInteger g,
 	                                                  final BigInteger a) {
 
-		return g.modPow(a, N);
+		return FixedBaseModPow.modPow(g, a, N);
 	}
 
 
@@ -266,8 +266,36 @@ public class SRP6Routines implements Serializable {
 	                                           final BigInteger a,
 	                                           final BigInteger B) {
 
+		return computeClientSessionKey(N, k, x, FixedBaseModPow.modPow(g, x, N), u, a, B);
+	}
+
+
+	/**
+	 * Computes the session key S = (B - k * g^x) ^ (a + u * x) (mod N)
+	 * from client-side parameters, with g^x computed in advance.
+	 *
+	 * @param N  The prime parameter 'N'. Must not be {@code null}.
+	 * @param k  The SRP-6a multiplier 'k'. Must not be {@code null}.
+	 * @param x  The 'x' value, see {@link #computeX}. Must not be
+	 *           {@code null}.
+	 * @param gx The value g^x (mod N). Must not be {@code null}.
+	 * @param u  The random scrambling parameter 'u'. Must not be
+	 *           {@code null}.
+	 * @param a  The private client value 'a'. Must not be {@code null}.
+	 * @param B  The public server value 'B'. Must note be {@code null}.
+	 *
+	 * @return The resulting session key 'S'.
+	 */
+	public BigInteger computeClientSessionKey(final BigInteger N,
+	                                          final BigInteger k,
+	                                          final BigInteger x,
+	                                          final BigInteger gx,
+	                                          final BigInteger u,
+	                                          final BigInteger a,
+	                                          final BigInteger B) {
+
 		final BigInteger exp = u.multiply(x).add(a);
-		final BigInteger tmp = g.modPow(x, N).multiply(k);
+		final BigInteger tmp = gx.multiply(k);
 		return B.subtract(tmp).modPow(exp, N);
 	}
 
@@ -307,7 +335,7 @@ public class SRP6Routines implements Serializable {
 	public BigInteger computeSharedSessionKey(final MessageDigest digest,
 											  final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -332,9 +360,9 @@ public class SRP6Routines implements Serializable {
 	                                               final BigInteger B,
 	                                               final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(A));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(B));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, A);
+		BigIntegerUtils.updateDigest(digest, B);
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -360,9 +388,9 @@ public class SRP6Routines implements Serializable {
 	                                                  final BigInteger M1,
 	                                                  final BigInteger S) {
 
-		digest.update(BigIntegerUtils.bigIntegerToBytes(A));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(M1));
-		digest.update(BigIntegerUtils.bigIntegerToBytes(S));
+		BigIntegerUtils.updateDigest(digest, A);
+		BigIntegerUtils.updateDigest(digest, M1);
+		BigIntegerUtils.updateDigest(digest, S);
 
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
@@ -389,12 +417,8 @@ public class SRP6Routines implements Serializable {
 
 		final int padLength = (N.bitLength() + 7) / 8;
 
-		byte[] n1_bytes = getPadded(n1, padLength);
-
-		byte[] n2_bytes = getPadded(n2, padLength);
-
-		digest.update(n1_bytes);
-		digest.update(n2_bytes);
+		BigIntegerUtils.updateDigest(digest, n1, padLength);
+		BigIntegerUtils.updateDigest(digest, n2, padLength);
 
 		byte[] output = digest.digest();
 
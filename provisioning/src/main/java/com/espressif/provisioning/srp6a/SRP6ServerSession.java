@@ -124,7 +124,7 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 
 		this.config = config;
 		
-		if (config.getMessageDigestInstance() == null)
+		if (config.getThreadMessageDigest() == null)
 			throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
 
 		state = State.INIT;
@@ -194,7 +194,7 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 		if (state != State.INIT)
 			throw new IllegalStateException("State violation: Session must be in INIT state");
 		
-		MessageDigest digest = config.getMessageDigestInstance();
+		MessageDigest digest = config.getThreadMessageDigest();
 		
 		// Generate server private and public values
 		k = srp6Routines.computeK(digest, config.N, config.g);
@@ -298,7 +298,7 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 		if (! srp6Routines.isValidPublicValue(config.N, A))
 			throw new SRP6Exception("Bad client public value 'A'", SRP6Exception.CauseType.BAD_PUBLIC_VALUE);
 		
-		MessageDigest digest = config.getMessageDigestInstance();
+		MessageDigest digest = config.getThreadMessageDigest();
 		
 		if (hashedKeysRoutine != null) {
 			URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -309,6 +309,10 @@ public class SRP6ServerSession extends SRP6Session implements Serializable {
 		}
 		
 		S = srp6Routines.computeSessionKey(config.N, v, u, A, b);
+
+		// Compute the shared session key 'K', passed to custom client
+		// evidence routines such as the one of Espressif devices
+		K = srp6Routines.computeSharedSessionKey(digest, S);
 		
 		// Compute the own client evidence message 'M1'
 		BigInteger computedM1;
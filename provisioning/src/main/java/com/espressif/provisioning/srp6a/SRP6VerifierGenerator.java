@@ -174,7 +174,7 @@ public class SRP6VerifierGenerator {
 		}
 		else {
 			// With default routine
-			x = srp6Routines.computeX(config.getMessageDigestInstance(), salt, password);
+			x = srp6Routines.computeX(config.getThreadMessageDigest(), salt, password);
 		}
 		
 		return srp6Routines.computeVerifier(config.N, config.g, x);
@@ -39,10 +39,10 @@ import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 
 /**
  * Bluetooth implementation of the Transport protocol.
@@ -50,19 +50,27 @@ import java.util.concurrent.Semaphore;
 public class BLETransport implements Transport {
 
     private static final String TAG = "Espressif::" + BLETransport.class.getSimpleName();
+    private static final String CLIENT_CHARACTERISTIC_CONFIG_UUID = "00002902-0000-1000-8000-00805f9b34fb";
+    private static final String CHARACTERISTIC_USER_DESCRIPTION_UUID = "00002901-0000-1000-8000-00805f9b34fb";
 
     private Context context;
     private BluetoothDevice currentDevice;
     private BluetoothGatt bluetoothGatt;
     private BluetoothGattService service;
-    private ResponseListener currentResponseListener;
-    private Semaphore transportToken;
     private ExecutorService dispatcherThreadPool;
+    private GattOperationQueue operationQueue;
     private HashMap<String, String> uuidMap = new HashMap<>();
     private ArrayList<String> charUuidList = new ArrayList<>();
+    private HashSet<String> discoveredCharUuids = new HashSet<>();
 
     private String serviceUuid;
-    private boolean isReadingDescriptors = false;
+    private boolean isNotificationModeEnabled = false;
+    private boolean isSubscribedToEndpoints = false;
+    private volatile boolean isConnected = false;
+    private volatile int connectionGeneration;
+    private GattEndpointCache endpointCache;
+    private String cachedVersionInfo;
+    private ESPConstants.BleLinkProfile linkProfile = ESPConstants.BleLinkProfile.BALANCED;
     public ArrayList<String> deviceCapabilities = new ArrayList<>();
     public String versionInfo;
 
@@ -73,8 +81,9 @@ public class BLETransport implements Transport {
      */
     public BLETransport(Context context) {
         this.context = context;
-        this.transportToken = new Semaphore(1);
         this.dispatcherThreadPool = Executors.newSingleThreadExecutor();
+        this.operationQueue = new GattOperationQueue(dispatcherThreadPool);
+        this.endpointCache = new GattEndpointCache(context);
     }
 
     /**
@@ -96,32 +105,18 @@ public class BLETransport implements Transport {
             }
 
             if (characteristic != null) {
-                try {
-                    this.transportToken.acquire();
-                    characteristic.setValue(data);
-                    bluetoothGatt.writeCharacteristic(characteristic);
-                    currentResponseListener = listener;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    listener.onFailure(e);
-                    this.transportToken.release();
-                    currentResponseListener = listener;
-                    if (currentResponseListener != null) {
-                        currentResponseListener.onFailure(e);
-                    }
-                }
+                // Exchange is started as soon as the previous one completes, caller is not blocked.
+                operationQueue.enqueue(characteristic, data, listener);
             } else {
                 Log.e(TAG, "Characteristic is not available for given path.");
-                currentResponseListener = listener;
-                if (currentResponseListener != null) {
-                    currentResponseListener.onFailure(new RuntimeException("Characteristic is not available for given path."));
+                if (listener != null) {
+                    listener.onFailure(new RuntimeException("Characteristic is not available for given path."));
                 }
             }
         } else {
-            currentResponseListener = listener;
             Log.e(TAG, "Characteristic is not available for given path.");
-            if (currentResponseListener != null) {
-                currentResponseListener.onFailure(new RuntimeException("Characteristic is not available for given path."));
+            if (listener != null) {
+                listener.onFailure(new RuntimeException("Characteristic is not available for given path."));
             }
         }
     }
@@ -140,6 +135,10 @@ public class BLETransport implements Transport {
         } else {
             bluetoothGatt = this.currentDevice.connectGatt(context, false, gattCallback);
         }
+        operationQueue.setBluetoothGatt(bluetoothGatt);
+        operationQueue.setMtu(BleTransferStats.DEFAULT_MTU);
+        linkProfile = ESPConstants.BleLinkProfile.BALANCED;
+        operationQueue.setLinkProfile(linkProfile);
     }
 
     /**
@@ -148,11 +147,105 @@ public class BLETransport implements Transport {
     public void disconnect() {
 
         Log.e(TAG, "Disconnect device");
+        isConnected = false;
 
         if (this.bluetoothGatt != null) {
             this.bluetoothGatt.disconnect();
             bluetoothGatt = null;
         }
+        Log.d(TAG, "Transfer stats : " + operationQueue.getStats());
+        operationQueue.setBluetoothGatt(null);
+        operationQueue.cancelAll(new RuntimeException("Device disconnected"));
+    }
+
+    /**
+     * @return true if GATT connection with the device is up.
+     */
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Connection generation is incremented each time GATT connection with the device comes up.
+     * State kept for a connection (e.g. a secure session) is valid only while the generation is unchanged.
+     *
+     * @return Generation of the current connection.
+     */
+    public int getConnectionGeneration() {
+        return connectionGeneration;
+    }
+
+    /**
+     * Enable / disable notification mode. In notification mode, notifications or indications of
+     * endpoint characteristics are enabled while connecting and the response of the device is
+     * received in a notification, in one round trip instead of a write followed by a read.
+     * Endpoints which do not support notifications keep using write-then-read.
+     * Note : It should be set before connecting to the device.
+     *
+     * @param isEnabled true to enable notification mode.
+     */
+    public void setNotificationModeEnabled(boolean isEnabled) {
+        isNotificationModeEnabled = isEnabled;
+    }
+
+    public boolean isNotificationModeEnabled() {
+        return isNotificationModeEnabled;
+    }
+
+    /**
+     * Apply connection priority and preferred PHY of given link profile to the connection.
+     * PHY is changed only on Android 8.0 and above.
+     * Throughput achieved with each profile is reported by {@link #getTransferStats()}.
+     *
+     * @param profile Link profile.
+     */
+    public void setLinkProfile(ESPConstants.BleLinkProfile profile) {
+
+        BluetoothGatt gatt = bluetoothGatt;
+        if (gatt == null || profile == linkProfile) {
+            return;
+        }
+
+        int connectionPriority;
+        int phy;
+        switch (profile) {
+            case HANDSHAKE_FAST:
+                connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+                phy = BluetoothDevice.PHY_LE_2M_MASK;
+                break;
+            case IDLE_LOW_POWER:
+                connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER;
+                phy = BluetoothDevice.PHY_LE_1M_MASK;
+                break;
+            case BALANCED:
+            default:
+                connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+                phy = BluetoothDevice.PHY_LE_1M_MASK;
+                break;
+        }
+
+        Log.d(TAG, "Link profile : " + profile + ", transfer stats : " + operationQueue.getStats());
+        if (!gatt.requestConnectionPriority(connectionPriority)) {
+            Log.e(TAG, "Failed to request connection priority " + connectionPriority);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            gatt.setPreferredPhy(phy, phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+        }
+        linkProfile = profile;
+        operationQueue.setLinkProfile(profile);
+    }
+
+    public ESPConstants.BleLinkProfile getLinkProfile() {
+        return linkProfile;
+    }
+
+    /**
+     * Get negotiated MTU and bytes transferred per GATT operation and per ATT request.
+     *
+     * @return Transfer stats since the transport was created.
+     */
+    public BleTransferStats getTransferStats() {
+        return operationQueue.getStats();
     }
 
     public void refreshServices() {
@@ -178,10 +271,10 @@ public class BLETransport implements Transport {
             Log.d(TAG, "onConnectionStateChange, New state : " + newState + ", Status : " + status);
 
             if (status == BluetoothGatt.GATT_FAILURE) {
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             } else if (status == 133) {
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             } else if (status != BluetoothGatt.GATT_SUCCESS && newState != BluetoothProfile.STATE_DISCONNECTED) {
                 // TODO need to check this status
@@ -190,10 +283,14 @@ public class BLETransport implements Transport {
 
             if (newState == BluetoothProfile.STATE_CONNECTED) {
                 Log.e(TAG, "Connected to GATT server.");
+                connectionGeneration++;
+                isConnected = true;
                 gatt.requestMtu(512);
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
                 Log.e(TAG, "Disconnected from GATT server.");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_DISCONNECTED));
+                isConnected = false;
+                operationQueue.cancelAll(new RuntimeException("Device disconnected"));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_DISCONNECTED);
             }
         }
 
@@ -205,7 +302,7 @@ public class BLETransport implements Transport {
 
             if (status != BluetoothGatt.GATT_SUCCESS) {
                 Log.d(TAG, "Status not success");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             }
 
@@ -213,76 +310,54 @@ public class BLETransport implements Transport {
 
             if (service == null) {
                 Log.e(TAG, "Service not found!");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                 return;
             }
 
+            charUuidList.clear();
+            discoveredCharUuids.clear();
+            uuidMap.clear();
+            isSubscribedToEndpoints = false;
+
             for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
 
                 if (characteristic == null) {
                     Log.e(TAG, "Tx characteristic not found!");
-                    EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                    postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                     return;
                 }
 
                 String uuid = characteristic.getUuid().toString();
                 Log.d(TAG, "Characteristic UUID : " + uuid);
                 charUuidList.add(uuid);
+                discoveredCharUuids.add(uuid);
 
                 characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
             }
 
-            readNextDescriptor();
+            if (loadCachedEndpoints()) {
+                // Cached endpoints are validated by the proto-ver response.
+                subscribeToEndpoints();
+                readProtoVersion();
+            } else {
+                readNextDescriptor();
+            }
         }
 
         @Override
         public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
 
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "Read Descriptor : " + bluetoothGatt.readDescriptor(descriptor));
-            } else {
-                Log.e(TAG, "Fail to write descriptor");
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
-            }
+            Log.d(TAG, "onDescriptorWrite, status : " + status);
+            super.onDescriptorWrite(gatt, descriptor, status);
+            operationQueue.onDescriptorWrite(descriptor, status);
         }
 
         @Override
         public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
 
             Log.d(TAG, "DescriptorRead, : Status " + status);
-            byte[] data = descriptor.getValue();
-            String charUuid = descriptor.getCharacteristic().getUuid().toString();
-
-            if (status != BluetoothGatt.GATT_SUCCESS) {
-                Log.e(TAG, "Failed to read descriptor");
-                charUuidList.remove(charUuid);
-//                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
-//                return;
-            }
-
-            if (data == null) {
-                Log.e(TAG, "Descriptor value is null");
-                charUuidList.remove(charUuid);
-            } else {
-                String value = new String(data, StandardCharsets.UTF_8);
-                uuidMap.put(value, charUuid);
-                Log.d(TAG, "DescriptorRead, Value : " + value + " for UUID : " + charUuid);
-            }
-
-            if (isReadingDescriptors) {
-
-                readNextDescriptor();
-
-            } else {
-
-                BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuidMap.get(ESPConstants.HANDLER_PROTO_VER)));
-
-                if (characteristic != null) {
-                    // Write anything. It doesn't matter. We need to read characteristic and for that we need to write something.
-                    characteristic.setValue("ESP");
-                    bluetoothGatt.writeCharacteristic(characteristic);
-                }
-            }
+            super.onDescriptorRead(gatt, descriptor, status);
+            operationQueue.onDescriptorRead(descriptor, status);
         }
 
         @Override
@@ -290,14 +365,22 @@ public class BLETransport implements Transport {
             super.onMtuChanged(gatt, mtu, status);
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 Log.d(TAG, "Supported MTU = " + mtu);
+                operationQueue.setMtu(mtu);
             }
             gatt.discoverServices();
         }
 
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyUpdate(gatt, txPhy, rxPhy, status);
+            Log.d(TAG, "onPhyUpdate, TX PHY : " + txPhy + ", RX PHY : " + rxPhy + ", Status : " + status);
+        }
+
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
             Log.d(TAG, "onCharacteristicChanged");
             super.onCharacteristicChanged(gatt, characteristic);
+            operationQueue.onCharacteristicChanged(characteristic);
         }
 
         @Override
@@ -307,12 +390,163 @@ public class BLETransport implements Transport {
 
             Log.d(TAG, "onCharacteristicRead, status " + status + " UUID : " + characteristic.getUuid().toString());
             super.onCharacteristicRead(gatt, characteristic, status);
+            operationQueue.onCharacteristicRead(characteristic, status);
+        }
 
-            if (uuidMap.get((ESPConstants.HANDLER_PROTO_VER)).equals(characteristic.getUuid().toString())) {
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
 
-                String data = new String(characteristic.getValue(), StandardCharsets.UTF_8);
+            Log.d(TAG, "onCharacteristicWrite, status : " + status);
+            Log.d(TAG, "UUID : " + characteristic.getUuid().toString());
+            super.onCharacteristicWrite(gatt, characteristic, status);
+            operationQueue.onCharacteristicWrite(characteristic, status);
+        }
+
+        @Override
+        public void onReliableWriteCompleted(BluetoothGatt gatt, int status) {
+
+            Log.d(TAG, "onReliableWriteCompleted, status : " + status);
+            super.onReliableWriteCompleted(gatt, status);
+            operationQueue.onReliableWriteCompleted(status);
+        }
+    };
+
+    /**
+     * Post connection event tagged with the address of the device,
+     * so that events of several devices connected at the same time can be told apart.
+     */
+    private void postConnectionEvent(short eventType) {
+
+        String address = currentDevice == null ? null : currentDevice.getAddress();
+        EventBus.getDefault().post(new DeviceConnectionEvent(eventType, address));
+    }
+
+    /**
+     * Remove cached endpoints of all devices, so that descriptors are read again on next connection.
+     */
+    public void clearEndpointCache() {
+        endpointCache.clear();
+    }
+
+    /**
+     * Use endpoints cached on a previous connection to the device instead of reading
+     * the user description descriptor of every characteristic.
+     *
+     * @return true if cached endpoints of the device were found and loaded.
+     */
+    private boolean loadCachedEndpoints() {
+
+        cachedVersionInfo = null;
+        GattEndpointCache.Entry entry = endpointCache.get(currentDevice.getAddress(), serviceUuid);
+        if (entry == null) {
+            return false;
+        }
+
+        if (!entry.characteristicUuids.equals(discoveredCharUuids)) {
+            Log.d(TAG, "Characteristics of the device have changed, cached endpoints are not used");
+            endpointCache.remove(currentDevice.getAddress(), serviceUuid);
+            return false;
+        }
+
+        Log.d(TAG, "Using cached endpoints : " + entry.uuidMap);
+        uuidMap.clear();
+        uuidMap.putAll(entry.uuidMap);
+        cachedVersionInfo = entry.versionInfo;
+        return true;
+    }
+
+    /**
+     * Forget cached endpoints of the device and read descriptors of all characteristics.
+     */
+    private void discardCachedEndpoints() {
+
+        endpointCache.remove(currentDevice.getAddress(), serviceUuid);
+        cachedVersionInfo = null;
+        uuidMap.clear();
+
+        if (bluetoothGatt == null) {
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
+            return;
+        }
+        readNextDescriptor();
+    }
+
+    /**
+     * Enable notifications or indications of all endpoint characteristics which support them,
+     * if notification mode is enabled. Endpoints which do not support them keep using write-then-read.
+     * Subscriptions are made once per connection, also if cached endpoints are read again.
+     */
+    private void subscribeToEndpoints() {
+
+        if (!isNotificationModeEnabled || isSubscribedToEndpoints) {
+            return;
+        }
+        isSubscribedToEndpoints = true;
+
+        for (String uuid : uuidMap.values()) {
+
+            BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuid));
+            if (characteristic == null) {
+                continue;
+            }
+
+            int properties = characteristic.getProperties();
+            byte[] value;
+            if ((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0) {
+                value = BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE;
+            } else if ((properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) != 0) {
+                value = BluetoothGattDescriptor.ENABLE_INDICATION_VALUE;
+            } else {
+                Log.d(TAG, "Characteristic " + uuid + " does not support notifications");
+                continue;
+            }
+
+            BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUID.fromString(CLIENT_CHARACTERISTIC_CONFIG_UUID));
+            if (descriptor == null || !bluetoothGatt.setCharacteristicNotification(characteristic, true)) {
+                Log.d(TAG, "Notifications can not be enabled for characteristic " + uuid);
+                continue;
+            }
+            operationQueue.enqueueSubscription(characteristic, descriptor, value);
+        }
+    }
+
+    /**
+     * Read version and capabilities of the device from proto-ver endpoint.
+     * Connection is reported to the app once they are available.
+     */
+    private void readProtoVersion() {
+
+        BluetoothGattCharacteristic characteristic = null;
+        String protoVerUuid = uuidMap.get(ESPConstants.HANDLER_PROTO_VER);
+        if (protoVerUuid != null) {
+            characteristic = service.getCharacteristic(UUID.fromString(protoVerUuid));
+        }
+
+        if (characteristic == null) {
+            Log.e(TAG, "Proto-ver characteristic not found!");
+            postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
+            return;
+        }
+
+        // Write anything. It doesn't matter. We need to read characteristic and for that we need to write something.
+        operationQueue.enqueue(characteristic, "ESP".getBytes(StandardCharsets.UTF_8), new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+
+                String data = new String(returnData, StandardCharsets.UTF_8);
                 Log.d(TAG, "Value : " + data);
+
+                if (cachedVersionInfo != null && !cachedVersionInfo.equals(data)) {
+                    Log.d(TAG, "Version of the device has changed, reading endpoints again");
+                    discardCachedEndpoints();
+                    return;
+                }
+                if (cachedVersionInfo == null) {
+                    endpointCache.put(currentDevice.getAddress(), serviceUuid, discoveredCharUuids, uuidMap, data);
+                }
                 versionInfo = data;
+                deviceCapabilities.clear();
 
                 try {
                     JSONObject jsonObject = new JSONObject(data);
@@ -334,95 +568,86 @@ public class BLETransport implements Transport {
                     Log.d(TAG, "Capabilities JSON not available.");
                 }
 
-                EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED));
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTED);
             }
 
-            if (currentResponseListener != null) {
-
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    /*
-                     * Need to dispatch this on another thread since the caller
-                     * might decide to enqueue another send operation on success
-                     * of the first.
-                     */
-                    final ResponseListener responseListener = currentResponseListener;
-                    dispatcherThreadPool.submit(new Runnable() {
-                        @Override
-                        public void run() {
-                            currentResponseListener = null;
-                            byte[] charValue = characteristic.getValue();
-                            responseListener.onSuccess(charValue);
-                        }
-                    });
-                } else {
-
-                    currentResponseListener.onFailure(new Exception("Read from BLE failed"));
-//                    EventBus.getDefault().post(new DeviceProvEvent(LibConstants.EVENT_DEVICE_COMMUNICATION_FAILED));
-                }
-            }
-            transportToken.release();
-        }
-
-        @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-
-            Log.d(TAG, "onCharacteristicWrite, status : " + status);
-            Log.d(TAG, "UUID : " + characteristic.getUuid().toString());
-            super.onCharacteristicWrite(gatt, characteristic, status);
-
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                bluetoothGatt.readCharacteristic(characteristic);
-            } else {
-                if (currentResponseListener != null) {
-                    currentResponseListener.onFailure(new Exception("Write to BLE failed"));
-//                    EventBus.getDefault().post(new DeviceProvEvent(LibConstants.EVENT_DEVICE_COMMUNICATION_FAILED));
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to read proto-ver : " + e.getMessage());
+                if (cachedVersionInfo != null) {
+                    discardCachedEndpoints();
+                    return;
                 }
-                transportToken.release();
+                postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
             }
-        }
-    };
+        });
+    }
 
+    /**
+     * Read the user description of the next characteristic whose endpoint is not known yet.
+     * Reads go through the operation queue, so they never overlap with other GATT operations.
+     * Once all endpoints are known, version of the device is read.
+     */
     private void readNextDescriptor() {
 
-        boolean found = false;
-
         for (int i = 0; i < charUuidList.size(); i++) {
 
-            String uuid = charUuidList.get(i);
+            final String uuid = charUuidList.get(i);
 
             if (!uuidMap.containsValue(uuid)) {
 
-                // Read descriptor
                 BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuid));
                 if (characteristic == null) {
                     Log.e(TAG, "Tx characteristic not found!");
                     disconnect();
-                    EventBus.getDefault().post(new DeviceConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED));
+                    postConnectionEvent(ESPConstants.EVENT_DEVICE_CONNECTION_FAILED);
                     return;
                 }
 
-                for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors()) {
-
-                    Log.d(TAG, "Descriptor : " + descriptor.getUuid().toString());
-                    Log.d(TAG, "Des read : " + bluetoothGatt.readDescriptor(descriptor));
+                BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUID.fromString(CHARACTERISTIC_USER_DESCRIPTION_UUID));
+                if (descriptor == null && !characteristic.getDescriptors().isEmpty()) {
+                    descriptor = characteristic.getDescriptors().get(0);
+                }
+                if (descriptor == null) {
+                    Log.e(TAG, "Descriptor not found for UUID : " + uuid);
+                    charUuidList.remove(i);
+                    i--;
+                    continue;
                 }
-                found = true;
-                break;
-            }
-        }
 
-        if (found) {
-            isReadingDescriptors = true;
-        } else {
+                Log.d(TAG, "Descriptor : " + descriptor.getUuid().toString());
+                operationQueue.enqueueDescriptorRead(characteristic, descriptor, new ResponseListener() {
 
-            isReadingDescriptors = false;
+                    @Override
+                    public void onSuccess(byte[] returnData) {
 
-            BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString(uuidMap.get(ESPConstants.HANDLER_PROTO_VER)));
+                        if (returnData == null) {
+                            Log.e(TAG, "Descriptor value is null");
+                            charUuidList.remove(uuid);
+                        } else {
+                            String value = new String(returnData, StandardCharsets.UTF_8);
+                            uuidMap.put(value, uuid);
+                            Log.d(TAG, "DescriptorRead, Value : " + value + " for UUID : " + uuid);
+                        }
+                        readNextDescriptor();
+                    }
 
-            if (characteristic != null) {
-                characteristic.setValue("ESP");
-                bluetoothGatt.writeCharacteristic(characteristic);
+                    @Override
+                    public void onFailure(Exception e) {
+
+                        Log.e(TAG, "Failed to read descriptor : " + e.getMessage());
+                        if (!isConnected) {
+                            return;
+                        }
+                        charUuidList.remove(uuid);
+                        readNextDescriptor();
+                    }
+                });
+                return;
             }
         }
+
+        subscribeToEndpoints();
+        readProtoVersion();
     }
 }
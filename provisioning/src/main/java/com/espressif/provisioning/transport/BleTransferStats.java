@@ -0,0 +1,221 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import com.espressif.provisioning.ESPConstants;
+
+import java.util.EnumMap;
+
+/**
+ * Transfer counters of the BLE transport.
+ * Number of ATT PDUs is derived from the negotiated MTU: a value longer than one PDU
+ * is written with prepared writes and read with read blob requests, which the Bluetooth stack
+ * issues on behalf of a single GATT operation.
+ */
+public class BleTransferStats {
+
+    /**
+     * ATT MTU used until the MTU exchange has completed.
+     */
+    static final int DEFAULT_MTU = 23;
+
+    private int mtu = DEFAULT_MTU;
+    private int gattOperationCount;
+    private int attPduCount;
+    private long bytesWritten;
+    private long bytesRead;
+    private int reliableWriteCount;
+    private int notificationCount;
+    private final EnumMap<ESPConstants.BleLinkProfile, long[]> profileTransfers =
+            new EnumMap<>(ESPConstants.BleLinkProfile.class);
+
+    synchronized void setMtu(int mtu) {
+        this.mtu = mtu;
+    }
+
+    synchronized void recordWrite(int length) {
+        gattOperationCount++;
+        bytesWritten += length;
+        attPduCount += getWritePduCount(mtu, length);
+    }
+
+    synchronized void recordRead(int length) {
+        gattOperationCount++;
+        bytesRead += length;
+        attPduCount += getReadPduCount(mtu, length);
+    }
+
+    /**
+     * Response received in a notification, without a GATT read operation.
+     */
+    synchronized void recordNotification(int length) {
+        gattOperationCount++;
+        bytesRead += length;
+        attPduCount++;
+        notificationCount++;
+    }
+
+    /**
+     * Record complete exchange (request and response) made while given link profile was active.
+     */
+    synchronized void recordExchange(ESPConstants.BleLinkProfile profile, int length, long durationMs) {
+
+        long[] transfer = profileTransfers.get(profile);
+        if (transfer == null) {
+            transfer = new long[3];
+            profileTransfers.put(profile, transfer);
+        }
+        transfer[0]++;
+        transfer[1] += length;
+        transfer[2] += durationMs;
+    }
+
+    synchronized void recordReliableWrite() {
+        reliableWriteCount++;
+    }
+
+    private String getProfileThroughputs() {
+
+        StringBuilder throughputs = new StringBuilder();
+        for (ESPConstants.BleLinkProfile profile : profileTransfers.keySet()) {
+            if (throughputs.length() > 0) {
+                throughputs.append(", ");
+            }
+            throughputs.append(profile).append(' ').append(getThroughput(profile)).append(" B/s");
+        }
+        return "[" + throughputs + "]";
+    }
+
+    /**
+     * Number of ATT requests needed to write a value: one Write Request if value fits into
+     * one PDU, otherwise Prepare Write Requests followed by one Execute Write Request.
+     */
+    static int getWritePduCount(int mtu, int length) {
+
+        if (length <= mtu - 3) {
+            return 1;
+        }
+        int fragmentSize = mtu - 5;
+        return (length + fragmentSize - 1) / fragmentSize + 1;
+    }
+
+    /**
+     * Number of ATT requests needed to read a value: one Read Request and
+     * Read Blob Requests for the rest of the value.
+     */
+    static int getReadPduCount(int mtu, int length) {
+
+        int fragmentSize = mtu - 1;
+        if (length < fragmentSize) {
+            return 1;
+        }
+        // A value of exactly n full PDUs needs one more (empty) read blob to detect the end.
+        return length / fragmentSize + 1;
+    }
+
+    /**
+     * @return Negotiated ATT MTU.
+     */
+    public synchronized int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * @return Number of GATT writes, reads and received notifications.
+     */
+    public synchronized int getGattOperationCount() {
+        return gattOperationCount;
+    }
+
+    /**
+     * @return Estimated number of ATT requests sent for those operations.
+     */
+    public synchronized int getAttPduCount() {
+        return attPduCount;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Number of long writes which had to be repeated as reliable writes.
+     */
+    public synchronized int getReliableWriteCount() {
+        return reliableWriteCount;
+    }
+
+    /**
+     * @return Number of responses received in notifications instead of being read.
+     */
+    public synchronized int getNotificationCount() {
+        return notificationCount;
+    }
+
+    /**
+     * @return Average number of bytes transferred by one GATT operation.
+     */
+    public synchronized long getAverageBytesPerGattOperation() {
+        return gattOperationCount == 0 ? 0 : (bytesWritten + bytesRead) / gattOperationCount;
+    }
+
+    /**
+     * @return Average number of bytes transferred by one ATT request.
+     */
+    public synchronized long getAverageBytesPerAttPdu() {
+        return attPduCount == 0 ? 0 : (bytesWritten + bytesRead) / attPduCount;
+    }
+
+    /**
+     * @param profile Link profile.
+     * @return Number of exchanges made while given link profile was active.
+     */
+    public synchronized long getExchangeCount(ESPConstants.BleLinkProfile profile) {
+        long[] transfer = profileTransfers.get(profile);
+        return transfer == null ? 0 : transfer[0];
+    }
+
+    /**
+     * Throughput achieved with given link profile, measured as bytes of request and response
+     * divided by the duration of the exchange.
+     *
+     * @param profile Link profile.
+     * @return Throughput in bytes per second or 0 if no exchange was made with given profile.
+     */
+    public synchronized long getThroughput(ESPConstants.BleLinkProfile profile) {
+        long[] transfer = profileTransfers.get(profile);
+        if (transfer == null || transfer[2] == 0) {
+            return 0;
+        }
+        return transfer[1] * 1000 / transfer[2];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MTU : " + mtu
+                + ", GATT operations : " + gattOperationCount
+                + " (avg " + getAverageBytesPerGattOperation() + " bytes)"
+                + ", ATT requests : " + attPduCount
+                + " (avg " + getAverageBytesPerAttPdu() + " bytes)"
+                + ", written : " + bytesWritten + " bytes, read : " + bytesRead + " bytes"
+                + ", notifications : " + notificationCount
+                + ", reliable writes : " + reliableWriteCount
+                + ", throughput : " + getProfileThroughputs();
+    }
+}
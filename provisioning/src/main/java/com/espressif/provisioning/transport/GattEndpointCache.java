@@ -0,0 +1,142 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent cache of the endpoint name to characteristic UUID map of BLE devices.
+ * Entries are keyed by device address and primary service UUID. They hold the UUIDs of all
+ * characteristics of the service, which must match the discovered ones before the entry is used,
+ * and the proto-ver response of the device, which is compared with the response received on
+ * the next connection to detect a firmware change.
+ */
+class GattEndpointCache {
+
+    private static final String TAG = "Espressif::" + GattEndpointCache.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "espressif_gatt_endpoint_cache";
+    private static final String KEY_ENDPOINTS = "endpoints";
+    private static final String KEY_VERSION_INFO = "proto_ver";
+    private static final String KEY_CHARACTERISTICS = "characteristics";
+
+    private final SharedPreferences preferences;
+
+    GattEndpointCache(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get cached endpoints of the device.
+     *
+     * @param deviceAddress Bluetooth address of the device.
+     * @param serviceUuid   Primary service UUID.
+     * @return Cached entry or null if device is not cached.
+     */
+    Entry get(String deviceAddress, String serviceUuid) {
+
+        String value = preferences.getString(getKey(deviceAddress, serviceUuid), null);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            JSONObject jsonObject = new JSONObject(value);
+            JSONObject endpoints = jsonObject.getJSONObject(KEY_ENDPOINTS);
+            Entry entry = new Entry();
+            entry.versionInfo = jsonObject.getString(KEY_VERSION_INFO);
+            entry.characteristicUuids.addAll(Arrays.asList(jsonObject.getString(KEY_CHARACTERISTICS).split(",")));
+
+            Iterator<String> paths = endpoints.keys();
+            while (paths.hasNext()) {
+                String path = paths.next();
+                entry.uuidMap.put(path, endpoints.getString(path));
+            }
+            return entry;
+
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid cache entry : " + e.getMessage());
+            remove(deviceAddress, serviceUuid);
+            return null;
+        }
+    }
+
+    /**
+     * Store endpoints of the device.
+     *
+     * @param deviceAddress       Bluetooth address of the device.
+     * @param serviceUuid         Primary service UUID.
+     * @param characteristicUuids UUIDs of all characteristics of the service.
+     * @param uuidMap             Endpoint name to characteristic UUID map.
+     * @param versionInfo         Response of proto-ver endpoint.
+     */
+    void put(String deviceAddress, String serviceUuid, Collection<String> characteristicUuids,
+             Map<String, String> uuidMap, String versionInfo) {
+
+        try {
+            JSONObject endpoints = new JSONObject();
+            for (Map.Entry<String, String> endpoint : uuidMap.entrySet()) {
+                endpoints.put(endpoint.getKey(), endpoint.getValue());
+            }
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put(KEY_ENDPOINTS, endpoints);
+            jsonObject.put(KEY_VERSION_INFO, versionInfo);
+            StringBuilder characteristics = new StringBuilder();
+            for (String uuid : characteristicUuids) {
+                if (characteristics.length() > 0) {
+                    characteristics.append(',');
+                }
+                characteristics.append(uuid);
+            }
+            jsonObject.put(KEY_CHARACTERISTICS, characteristics.toString());
+
+            preferences.edit().putString(getKey(deviceAddress, serviceUuid), jsonObject.toString()).apply();
+
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to cache endpoints : " + e.getMessage());
+        }
+    }
+
+    void remove(String deviceAddress, String serviceUuid) {
+        preferences.edit().remove(getKey(deviceAddress, serviceUuid)).apply();
+    }
+
+    void clear() {
+        preferences.edit().clear().apply();
+    }
+
+    private static String getKey(String deviceAddress, String serviceUuid) {
+        return deviceAddress + "/" + serviceUuid;
+    }
+
+    static class Entry {
+
+        HashMap<String, String> uuidMap = new HashMap<>();
+        HashSet<String> characteristicUuids = new HashSet<>();
+        String versionInfo;
+    }
+}
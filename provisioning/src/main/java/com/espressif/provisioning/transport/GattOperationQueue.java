@@ -0,0 +1,516 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.listeners.ResponseListener;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Asynchronous queue of GATT exchanges.
+ *
+ * <p>Android allows only one outstanding GATT operation per connection, so every exchange
+ * (write of the request followed by read of the response) is queued here and started
+ * as soon as the previous one has completed. Callers are never blocked. The next exchange
+ * is issued from the GATT callback, before the response of the previous one is handed to
+ * its listener, and responses are delivered on the dispatcher thread in the order in
+ * which the requests were queued. Descriptor reads and writes of the connection setup go
+ * through the same queue, so they never overlap with an exchange.
+ *
+ * <p>Values longer than one ATT PDU of the negotiated MTU are written by the stack with
+ * prepared writes and read with read blob requests. If such a long write is rejected,
+ * it is repeated once as a reliable write, in which the device echoes every fragment back
+ * before the write is executed.
+ *
+ * <p>If the endpoint characteristic has been subscribed to, the response is taken from
+ * the notification / indication which the device sends after the write, which saves the
+ * read round trip. If no notification arrives in time, or it may have been truncated to
+ * the notification size limit, the response is read as usual. A characteristic which did not
+ * notify in time is not waited for again.
+ *
+ * <p>Every GATT operation has a timeout. An operation which could not be issued because
+ * the stack was busy, or a read which timed out, is retried. A write which timed out is
+ * not retried since the device may already have processed it.
+ */
+class GattOperationQueue {
+
+    private static final String TAG = "Espressif::" + GattOperationQueue.class.getSimpleName();
+
+    private static final long OPERATION_TIMEOUT_MS = 5000;
+    private static final long NOTIFICATION_TIMEOUT_MS = 1000;
+    private static final long RETRY_DELAY_MS = 50;
+    private static final int MAX_RETRIES = 3;
+
+    private static final int STATE_WRITING = 1;
+    private static final int STATE_READING = 2;
+    private static final int STATE_EXECUTING_RELIABLE_WRITE = 3;
+    private static final int STATE_WAITING_FOR_NOTIFICATION = 4;
+    private static final int STATE_WRITING_DESCRIPTOR = 5;
+    private static final int STATE_READING_DESCRIPTOR = 6;
+
+    private final ArrayDeque<Exchange> pendingExchanges = new ArrayDeque<>();
+    private final Set<BluetoothGattCharacteristic> notifyingCharacteristics = new HashSet<>();
+    private final ExecutorService dispatcher;
+    private final Handler handler;
+    private final BleTransferStats stats = new BleTransferStats();
+
+    private BluetoothGatt bluetoothGatt;
+    private Exchange currentExchange;
+    private ESPConstants.BleLinkProfile linkProfile = ESPConstants.BleLinkProfile.BALANCED;
+
+    GattOperationQueue(ExecutorService dispatcher) {
+        this.dispatcher = dispatcher;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    synchronized void setBluetoothGatt(BluetoothGatt bluetoothGatt) {
+        this.bluetoothGatt = bluetoothGatt;
+        notifyingCharacteristics.clear();
+    }
+
+    /**
+     * @param mtu ATT MTU negotiated with the device.
+     */
+    void setMtu(int mtu) {
+        stats.setMtu(mtu);
+    }
+
+    /**
+     * @param linkProfile Link profile which is active, exchanges are accounted to it in transfer stats.
+     */
+    synchronized void setLinkProfile(ESPConstants.BleLinkProfile linkProfile) {
+        this.linkProfile = linkProfile;
+    }
+
+    BleTransferStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Queue write of the request followed by read of the response.
+     *
+     * @param characteristic Characteristic of the endpoint.
+     * @param data           Request data.
+     * @param listener       Listener which receives the response.
+     */
+    synchronized void enqueue(BluetoothGattCharacteristic characteristic, byte[] data, ResponseListener listener) {
+
+        pendingExchanges.add(new Exchange(characteristic, data, listener));
+        if (currentExchange == null) {
+            startNextExchange();
+        }
+    }
+
+    /**
+     * Queue write of the Client Characteristic Configuration descriptor which enables
+     * notifications or indications of the characteristic. Once it is written, responses of
+     * the characteristic are taken from notifications.
+     *
+     * @param characteristic Characteristic of the endpoint.
+     * @param descriptor     Client Characteristic Configuration descriptor of the characteristic.
+     * @param value          ENABLE_NOTIFICATION_VALUE or ENABLE_INDICATION_VALUE.
+     */
+    synchronized void enqueueSubscription(final BluetoothGattCharacteristic characteristic,
+                                          BluetoothGattDescriptor descriptor, byte[] value) {
+
+        Exchange exchange = new Exchange(characteristic, value, new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+                Log.d(TAG, "Subscribed to " + characteristic.getUuid());
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w(TAG, "Failed to subscribe to " + characteristic.getUuid() + ", responses will be read");
+            }
+        });
+        exchange.descriptor = descriptor;
+        exchange.state = STATE_WRITING_DESCRIPTOR;
+        pendingExchanges.add(exchange);
+        if (currentExchange == null) {
+            startNextExchange();
+        }
+    }
+
+    /**
+     * Queue read of a descriptor, e.g. the user description which names the endpoint of a characteristic.
+     *
+     * @param characteristic Characteristic of the descriptor.
+     * @param descriptor     Descriptor to be read.
+     * @param listener       Listener which receives the value of the descriptor.
+     */
+    synchronized void enqueueDescriptorRead(BluetoothGattCharacteristic characteristic,
+                                            BluetoothGattDescriptor descriptor, ResponseListener listener) {
+
+        Exchange exchange = new Exchange(characteristic, new byte[0], listener);
+        exchange.descriptor = descriptor;
+        exchange.state = STATE_READING_DESCRIPTOR;
+        pendingExchanges.add(exchange);
+        if (currentExchange == null) {
+            startNextExchange();
+        }
+    }
+
+    synchronized void onDescriptorRead(BluetoothGattDescriptor descriptor, int status) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.state != STATE_READING_DESCRIPTOR || exchange.descriptor != descriptor) {
+            Log.w(TAG, "Unexpected descriptor read callback for " + descriptor.getUuid());
+            return;
+        }
+        handler.removeCallbacks(timeoutTask);
+
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            completeCurrentExchange(descriptor.getValue());
+        } else {
+            retryOrFail("Descriptor read from BLE failed");
+        }
+    }
+
+    synchronized void onDescriptorWrite(BluetoothGattDescriptor descriptor, int status) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.state != STATE_WRITING_DESCRIPTOR || exchange.descriptor != descriptor) {
+            Log.w(TAG, "Unexpected descriptor write callback for " + descriptor.getUuid());
+            return;
+        }
+        handler.removeCallbacks(timeoutTask);
+
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            notifyingCharacteristics.add(exchange.characteristic);
+            completeCurrentExchange(null);
+        } else {
+            failCurrentExchange(new RuntimeException("Descriptor write to BLE failed"));
+        }
+    }
+
+    synchronized void onCharacteristicChanged(BluetoothGattCharacteristic characteristic) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.characteristic != characteristic) {
+            Log.w(TAG, "Unexpected notification from " + characteristic.getUuid());
+            return;
+        }
+
+        byte[] value = characteristic.getValue();
+        if (exchange.state == STATE_WAITING_FOR_NOTIFICATION) {
+            handler.removeCallbacks(timeoutTask);
+            completeWithNotification(exchange, value);
+        } else if (exchange.state == STATE_WRITING || exchange.state == STATE_EXECUTING_RELIABLE_WRITE) {
+            // Notification may be delivered before the write callback.
+            exchange.notifiedValue = value;
+        }
+    }
+
+    synchronized void onCharacteristicWrite(BluetoothGattCharacteristic characteristic, int status) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.state != STATE_WRITING || exchange.characteristic != characteristic) {
+            Log.w(TAG, "Unexpected write callback for " + characteristic.getUuid());
+            return;
+        }
+        handler.removeCallbacks(timeoutTask);
+
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            if (!exchange.isReliableWrite && exchange.data.length > stats.getMtu() - 3) {
+                Log.w(TAG, "Long write of " + exchange.data.length + " bytes failed with status "
+                        + status + ", retrying as reliable write");
+                exchange.isReliableWrite = true;
+                exchange.attempt = 0;
+                stats.recordReliableWrite();
+                issueCurrentOperation();
+            } else {
+                failCurrentExchange(new RuntimeException("Write to BLE failed"));
+            }
+            return;
+        }
+
+        if (exchange.isReliableWrite) {
+            // Device echoes the written value back, it must be verified before the write is executed.
+            if (!Arrays.equals(exchange.data, characteristic.getValue())) {
+                bluetoothGatt.abortReliableWrite();
+                failCurrentExchange(new RuntimeException("Reliable write to BLE was not echoed correctly"));
+                return;
+            }
+            exchange.state = STATE_EXECUTING_RELIABLE_WRITE;
+        } else {
+            stats.recordWrite(exchange.data.length);
+            startResponsePhase(exchange);
+            return;
+        }
+        exchange.attempt = 0;
+        issueCurrentOperation();
+    }
+
+    synchronized void onReliableWriteCompleted(int status) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.state != STATE_EXECUTING_RELIABLE_WRITE) {
+            Log.w(TAG, "Unexpected reliable write callback");
+            return;
+        }
+        handler.removeCallbacks(timeoutTask);
+
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            stats.recordWrite(exchange.data.length);
+            startResponsePhase(exchange);
+        } else {
+            failCurrentExchange(new RuntimeException("Reliable write to BLE failed"));
+        }
+    }
+
+    synchronized void onCharacteristicRead(BluetoothGattCharacteristic characteristic, int status) {
+
+        Exchange exchange = currentExchange;
+        if (exchange == null || exchange.state != STATE_READING || exchange.characteristic != characteristic) {
+            Log.w(TAG, "Unexpected read callback for " + characteristic.getUuid());
+            return;
+        }
+        handler.removeCallbacks(timeoutTask);
+
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            byte[] value = characteristic.getValue();
+            stats.recordRead(value == null ? 0 : value.length);
+            completeCurrentExchange(value);
+        } else {
+            retryOrFail("Read from BLE failed");
+        }
+    }
+
+    /**
+     * Fail the current and all queued exchanges, e.g. when the device got disconnected.
+     */
+    synchronized void cancelAll(Exception reason) {
+
+        handler.removeCallbacks(timeoutTask);
+        handler.removeCallbacks(retryTask);
+
+        if (currentExchange != null) {
+            dispatchFailure(currentExchange.listener, reason);
+            currentExchange = null;
+        }
+        Exchange exchange;
+        while ((exchange = pendingExchanges.poll()) != null) {
+            dispatchFailure(exchange.listener, reason);
+        }
+    }
+
+    private void startResponsePhase(Exchange exchange) {
+
+        exchange.attempt = 0;
+        if (notifyingCharacteristics.contains(exchange.characteristic)) {
+            if (exchange.notifiedValue != null) {
+                completeWithNotification(exchange, exchange.notifiedValue);
+            } else {
+                exchange.state = STATE_WAITING_FOR_NOTIFICATION;
+                handler.postDelayed(timeoutTask, NOTIFICATION_TIMEOUT_MS);
+            }
+        } else {
+            exchange.state = STATE_READING;
+            issueCurrentOperation();
+        }
+    }
+
+    private void completeWithNotification(Exchange exchange, byte[] value) {
+
+        int length = value == null ? 0 : value.length;
+        if (length >= stats.getMtu() - 3) {
+            // Notifications are limited to one PDU, longer response has to be read.
+            exchange.state = STATE_READING;
+            issueCurrentOperation();
+            return;
+        }
+        stats.recordNotification(length);
+        completeCurrentExchange(value);
+    }
+
+    /**
+     * Hand the response to the listener and start the next exchange.
+     * Value must be taken before the next exchange is started on the same characteristic.
+     */
+    private void completeCurrentExchange(final byte[] value) {
+
+        Exchange exchange = currentExchange;
+        final ResponseListener listener = exchange.listener;
+        int length = value == null ? 0 : value.length;
+        long duration = System.currentTimeMillis() - exchange.startTime;
+        if (exchange.descriptor == null) {
+            stats.recordExchange(linkProfile, exchange.data.length + length, duration);
+        }
+        Log.d(TAG, "Exchange with " + exchange.characteristic.getUuid() + " took "
+                + duration + " ms, written : "
+                + exchange.data.length + " bytes in "
+                + BleTransferStats.getWritePduCount(stats.getMtu(), exchange.data.length)
+                + " ATT requests, received : " + length + " bytes");
+
+        currentExchange = null;
+        startNextExchange();
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                listener.onSuccess(value);
+            }
+        });
+    }
+
+    private void startNextExchange() {
+
+        currentExchange = pendingExchanges.poll();
+        if (currentExchange != null) {
+            currentExchange.startTime = System.currentTimeMillis();
+            issueCurrentOperation();
+        }
+    }
+
+    private void issueCurrentOperation() {
+
+        Exchange exchange = currentExchange;
+        if (bluetoothGatt == null) {
+            failCurrentExchange(new RuntimeException("Device is not connected"));
+            return;
+        }
+
+        boolean isIssued;
+        if (exchange.state == STATE_WRITING_DESCRIPTOR) {
+            exchange.descriptor.setValue(exchange.data);
+            isIssued = bluetoothGatt.writeDescriptor(exchange.descriptor);
+        } else if (exchange.state == STATE_READING_DESCRIPTOR) {
+            isIssued = bluetoothGatt.readDescriptor(exchange.descriptor);
+        } else if (exchange.state == STATE_WRITING) {
+            if (exchange.isReliableWrite) {
+                isIssued = bluetoothGatt.beginReliableWrite();
+                if (isIssued) {
+                    exchange.characteristic.setValue(exchange.data);
+                    isIssued = bluetoothGatt.writeCharacteristic(exchange.characteristic);
+                    if (!isIssued) {
+                        bluetoothGatt.abortReliableWrite();
+                    }
+                }
+            } else {
+                exchange.characteristic.setValue(exchange.data);
+                isIssued = bluetoothGatt.writeCharacteristic(exchange.characteristic);
+            }
+        } else if (exchange.state == STATE_EXECUTING_RELIABLE_WRITE) {
+            isIssued = bluetoothGatt.executeReliableWrite();
+        } else {
+            isIssued = bluetoothGatt.readCharacteristic(exchange.characteristic);
+        }
+
+        if (isIssued) {
+            handler.postDelayed(timeoutTask, OPERATION_TIMEOUT_MS);
+        } else {
+            // Stack is busy with another operation, it is safe to try again.
+            retryOrFail("Failed to start GATT operation");
+        }
+    }
+
+    private void retryOrFail(String reason) {
+
+        Exchange exchange = currentExchange;
+        if (exchange.attempt < MAX_RETRIES) {
+            exchange.attempt++;
+            Log.w(TAG, reason + ", retry " + exchange.attempt + " of " + MAX_RETRIES);
+            handler.postDelayed(retryTask, RETRY_DELAY_MS);
+        } else {
+            failCurrentExchange(new RuntimeException(reason));
+        }
+    }
+
+    private void failCurrentExchange(Exception e) {
+
+        Log.e(TAG, "Exchange failed : " + e.getMessage());
+        dispatchFailure(currentExchange.listener, e);
+        currentExchange = null;
+        startNextExchange();
+    }
+
+    private void dispatchFailure(final ResponseListener listener, final Exception e) {
+
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private final Runnable retryTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GattOperationQueue.this) {
+                if (currentExchange != null) {
+                    issueCurrentOperation();
+                }
+            }
+        }
+    };
+
+    private final Runnable timeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GattOperationQueue.this) {
+                if (currentExchange == null) {
+                    return;
+                }
+                if (currentExchange.state == STATE_READING || currentExchange.state == STATE_READING_DESCRIPTOR) {
+                    retryOrFail("Read from BLE timed out");
+                } else if (currentExchange.state == STATE_WAITING_FOR_NOTIFICATION) {
+                    Log.w(TAG, "No notification from " + currentExchange.characteristic.getUuid()
+                            + ", reading response instead");
+                    notifyingCharacteristics.remove(currentExchange.characteristic);
+                    currentExchange.state = STATE_READING;
+                    issueCurrentOperation();
+                } else {
+                    if (currentExchange.isReliableWrite && bluetoothGatt != null) {
+                        bluetoothGatt.abortReliableWrite();
+                    }
+                    failCurrentExchange(new RuntimeException("Write to BLE timed out"));
+                }
+            }
+        }
+    };
+
+    private static class Exchange {
+
+        final BluetoothGattCharacteristic characteristic;
+        final byte[] data;
+        final ResponseListener listener;
+        int state = STATE_WRITING;
+        boolean isReliableWrite;
+        BluetoothGattDescriptor descriptor;
+        byte[] notifiedValue;
+        int attempt;
+        long startTime;
+
+        Exchange(BluetoothGattCharacteristic characteristic, byte[] data, ResponseListener listener) {
+            this.characteristic = characteristic;
+            this.data = data;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental HTTP/1.1 response parser for non-blocking reads.
+ * Bytes received from the device are accumulated by the caller in a ByteBuffer
+ * and this parser extracts complete responses from it, one at a time and in order,
+ * which is what HTTP/1.1 pipelining guarantees.
+ */
+class HttpResponseParser {
+
+    /**
+     * Try to parse one complete response from the buffer.
+     * Buffer must be in read mode (flipped). On success the position of the buffer is moved
+     * after the parsed response. If the buffer does not yet contain a complete response,
+     * position is left unchanged and null is returned.
+     *
+     * @param buffer      Received bytes.
+     * @param isEndOfData true if the device has closed the connection and no more bytes will arrive.
+     * @return Parsed response or null if more data is needed.
+     * @throws IOException if received data is not a valid HTTP response.
+     */
+    static KeepAliveHttpConnection.Response parse(ByteBuffer buffer, boolean isEndOfData) throws IOException {
+
+        int start = buffer.position();
+        int headerEnd = indexOf(buffer, start, new byte[]{'\r', '\n', '\r', '\n'});
+        if (headerEnd < 0) {
+            return null;
+        }
+
+        String head = decode(buffer, start, headerEnd);
+        String[] lines = head.split("\r\n");
+        String[] statusParts = lines[0].split(" ", 3);
+        if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line : " + lines[0]);
+        }
+
+        KeepAliveHttpConnection.Response response = new KeepAliveHttpConnection.Response();
+        response.responseCode = Integer.parseInt(statusParts[1].trim());
+        response.keepAlive = !statusParts[0].equals("HTTP/1.0");
+
+        int contentLength = -1;
+        boolean isChunked = false;
+
+        for (int i = 1; i < lines.length; i++) {
+
+            int index = lines[i].indexOf(':');
+            if (index <= 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, index).trim();
+            String value = lines[i].substring(index + 1).trim();
+
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                isChunked = value.equalsIgnoreCase("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                response.keepAlive = !value.equalsIgnoreCase("close");
+            } else if (name.equalsIgnoreCase("Set-Cookie")) {
+                response.setCookieHeaders.add(value);
+            }
+        }
+
+        int bodyStart = headerEnd + 4;
+
+        if (isChunked) {
+            int end = parseChunkedBody(buffer, bodyStart, response);
+            if (end < 0) {
+                return null;
+            }
+            buffer.position(end);
+        } else if (contentLength >= 0) {
+            if (buffer.limit() - bodyStart < contentLength) {
+                return null;
+            }
+            response.body = new byte[contentLength];
+            copy(buffer, bodyStart, response.body, 0, contentLength);
+            buffer.position(bodyStart + contentLength);
+        } else {
+            // No framing information, body ends when the device closes the connection.
+            if (!isEndOfData) {
+                return null;
+            }
+            response.body = new byte[buffer.limit() - bodyStart];
+            copy(buffer, bodyStart, response.body, 0, response.body.length);
+            response.keepAlive = false;
+            buffer.position(buffer.limit());
+        }
+        return response;
+    }
+
+    private static int parseChunkedBody(ByteBuffer buffer, int position,
+                                        KeepAliveHttpConnection.Response response) throws IOException {
+
+        byte[] crlf = new byte[]{'\r', '\n'};
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        while (true) {
+            int lineEnd = indexOf(buffer, position, crlf);
+            if (lineEnd < 0) {
+                return -1;
+            }
+            String sizeLine = decode(buffer, position, lineEnd);
+            int extensionIndex = sizeLine.indexOf(';');
+            if (extensionIndex >= 0) {
+                sizeLine = sizeLine.substring(0, extensionIndex);
+            }
+            int chunkSize;
+            try {
+                chunkSize = Integer.parseInt(sizeLine.trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size : " + sizeLine);
+            }
+            position = lineEnd + 2;
+
+            if (chunkSize == 0) {
+                // Skip trailers until the empty line
+                while (true) {
+                    int trailerEnd = indexOf(buffer, position, crlf);
+                    if (trailerEnd < 0) {
+                        return -1;
+                    }
+                    boolean isEmptyLine = trailerEnd == position;
+                    position = trailerEnd + 2;
+                    if (isEmptyLine) {
+                        response.body = body.toByteArray();
+                        return position;
+                    }
+                }
+            }
+
+            if (buffer.limit() - position < chunkSize + 2) {
+                return -1;
+            }
+            byte[] chunk = new byte[chunkSize];
+            copy(buffer, position, chunk, 0, chunkSize);
+            body.write(chunk, 0, chunkSize);
+            position += chunkSize + 2;
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, byte[] pattern) {
+
+        int last = buffer.limit() - pattern.length;
+        for (int i = from; i <= last; i++) {
+            boolean isMatch = true;
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) {
+                    isMatch = false;
+                    break;
+                }
+            }
+            if (isMatch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+
+        byte[] bytes = new byte[to - from];
+        copy(buffer, from, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void copy(ByteBuffer buffer, int from, byte[] destination, int offset, int length) {
+
+        ByteBuffer view = buffer.duplicate();
+        view.limit(from + length);
+        view.position(from);
+        view.get(destination, offset, length);
+    }
+}
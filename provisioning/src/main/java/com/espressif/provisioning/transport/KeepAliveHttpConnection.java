@@ -0,0 +1,338 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.SocketFactory;
+
+/**
+ * Single long-lived HTTP/1.1 connection to the device.
+ * All requests of the handshake and provisioning sequence are sent on the same
+ * TCP connection. If the device has closed the connection in the meantime,
+ * it is opened again and the request is retried once. A request is only retried when
+ * the device cannot have processed it, since session requests are not idempotent.
+ */
+class KeepAliveHttpConnection {
+
+    private static final String TAG = "Espressif::" + KeepAliveHttpConnection.class.getSimpleName();
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final int DEFAULT_PORT = 80;
+    private static final String CRLF = "\r\n";
+
+    private final String host;
+    private final int port;
+    private final SocketFactory socketFactory;
+    private final SoftAPConnectionStats stats = new SoftAPConnectionStats();
+
+    private Socket socket;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private boolean hasConnectedBefore;
+
+    /**
+     * @param baseUrl       Host address and port of the device.
+     * @param socketFactory Factory of unconnected sockets, e.g. the socket factory of the network
+     *                      on which the device is reachable.
+     */
+    KeepAliveHttpConnection(String baseUrl, SocketFactory socketFactory) {
+        this.socketFactory = socketFactory;
+        int index = baseUrl.lastIndexOf(':');
+        if (index > 0) {
+            host = baseUrl.substring(0, index);
+            port = Integer.parseInt(baseUrl.substring(index + 1));
+        } else {
+            host = baseUrl;
+            port = DEFAULT_PORT;
+        }
+    }
+
+    SoftAPConnectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Send POST request on the persistent connection.
+     * A request which fails on a reused connection while it is written, or for which the
+     * connection is closed or reset before any byte of the response arrives, is retried once on a
+     * new connection, since the device may have closed the idle connection in the meantime.
+     * Other failures, e.g. a read timeout after the request was sent, are never retried.
+     *
+     * @param path         Path of the endpoint.
+     * @param data         Request body.
+     * @param cookieHeader Value of the Cookie header or null.
+     * @return Response received from the device.
+     * @throws IOException if the request could not be sent or the response could not be read.
+     */
+    synchronized Response post(String path, byte[] data, String cookieHeader) throws IOException {
+
+        boolean isReused = isOpen();
+        try {
+            return execute(path, data, cookieHeader, isReused);
+        } catch (StaleConnectionException e) {
+            close();
+            Log.w(TAG, "Connection lost, reconnecting : " + e.getCause().getMessage());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        try {
+            return execute(path, data, cookieHeader, false);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    synchronized void close() {
+
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close socket : " + e.getMessage());
+            }
+        }
+        socket = null;
+        inputStream = null;
+        outputStream = null;
+    }
+
+    private boolean isOpen() {
+        return socket != null && socket.isConnected() && !socket.isClosed()
+                && !socket.isInputShutdown() && !socket.isOutputShutdown();
+    }
+
+    private void connect() throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        Socket newSocket = socketFactory.createSocket();
+        newSocket.setTcpNoDelay(true);
+        newSocket.setKeepAlive(true);
+        newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+        newSocket.setSoTimeout(READ_TIMEOUT);
+
+        socket = newSocket;
+        inputStream = new BufferedInputStream(newSocket.getInputStream());
+        // Headers and body are buffered so that the request goes out in one segment.
+        outputStream = new BufferedOutputStream(newSocket.getOutputStream());
+
+        long connectTime = System.currentTimeMillis() - startTime;
+        stats.recordConnect(connectTime, hasConnectedBefore);
+        hasConnectedBefore = true;
+        Log.d(TAG, "Connected to " + host + ":" + port + " in " + connectTime + " ms");
+    }
+
+    private Response execute(String path, byte[] data, String cookieHeader, boolean isReused) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        if (!isReused) {
+            connect();
+        }
+
+        try {
+            outputStream.write(buildRequestHead(host, port, path, data.length, cookieHeader));
+            outputStream.write(data);
+            outputStream.flush();
+        } catch (IOException e) {
+            if (isReused) {
+                throw new StaleConnectionException(e);
+            }
+            throw e;
+        }
+
+        // A reused connection which the device closed while idle ends before the status line,
+        // either with EOF or with a reset in response to the request just written.
+        // A timeout means the device may still be processing the request and is not retried.
+        inputStream.mark(1);
+        try {
+            if (inputStream.read() == -1) {
+                throw new EOFException("Connection closed by device");
+            }
+        } catch (EOFException | SocketException e) {
+            if (isReused) {
+                throw new StaleConnectionException(e);
+            }
+            throw e;
+        }
+        inputStream.reset();
+
+        Response response = readResponse();
+        if (!response.keepAlive) {
+            close();
+        }
+
+        long requestTime = System.currentTimeMillis() - startTime;
+        stats.recordRequest(requestTime, isReused);
+        Log.d(TAG, "Request to " + path + " took " + requestTime + " ms on "
+                + (isReused ? "reused" : "new") + " connection");
+        return response;
+    }
+
+    /**
+     * Build request line and headers of a keep-alive POST request.
+     *
+     * @return Request head encoded as ISO-8859-1 bytes, including the empty line which ends the headers.
+     */
+    static byte[] buildRequestHead(String host, int port, String path, int contentLength, String cookieHeader) {
+
+        StringBuilder request = new StringBuilder();
+        request.append("POST /").append(path).append(" HTTP/1.1").append(CRLF);
+        request.append("Host: ").append(host).append(':').append(port).append(CRLF);
+        request.append("Connection: keep-alive").append(CRLF);
+        request.append("Accept: text/plain").append(CRLF);
+        request.append("Content-Type: application/x-www-form-urlencoded").append(CRLF);
+        request.append("Content-Length: ").append(contentLength).append(CRLF);
+        if (cookieHeader != null) {
+            request.append("Cookie: ").append(cookieHeader).append(CRLF);
+        }
+        request.append(CRLF);
+        return request.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private Response readResponse() throws IOException {
+
+        String statusLine = readLine();
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line : " + statusLine);
+        }
+
+        Response response = new Response();
+        response.responseCode = Integer.parseInt(statusParts[1].trim());
+        response.keepAlive = !statusParts[0].equals("HTTP/1.0");
+
+        int contentLength = -1;
+        boolean isChunked = false;
+        String line;
+
+        while (!(line = readLine()).isEmpty()) {
+
+            int index = line.indexOf(':');
+            if (index <= 0) {
+                continue;
+            }
+            String name = line.substring(0, index).trim();
+            String value = line.substring(index + 1).trim();
+
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                isChunked = value.equalsIgnoreCase("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                response.keepAlive = !value.equalsIgnoreCase("close");
+            } else if (name.equalsIgnoreCase("Set-Cookie")) {
+                response.setCookieHeaders.add(value);
+            }
+        }
+
+        if (isChunked) {
+            response.body = readChunkedBody();
+        } else {
+            response.body = ResponseReader.readBody(inputStream, contentLength);
+            if (contentLength < 0) {
+                // No framing information, body ended when the device closed the connection.
+                response.keepAlive = false;
+            }
+        }
+        return response;
+    }
+
+    private byte[] readChunkedBody() throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine();
+            int extensionIndex = sizeLine.indexOf(';');
+            if (extensionIndex >= 0) {
+                sizeLine = sizeLine.substring(0, extensionIndex);
+            }
+            int chunkSize = Integer.parseInt(sizeLine.trim(), 16);
+            if (chunkSize == 0) {
+                // Skip trailers
+                String trailer;
+                do {
+                    trailer = readLine();
+                } while (!trailer.isEmpty());
+                break;
+            }
+            outputStream.write(readFully(chunkSize));
+            readLine();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] readFully(int length) throws IOException {
+
+        byte[] buffer = new byte[length];
+        ResponseReader.readFully(inputStream, buffer, 0, length);
+        return buffer;
+    }
+
+    private String readLine() throws IOException {
+
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = inputStream.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        throw new EOFException("Connection closed by device");
+    }
+
+    /**
+     * Failure of a request on a reused connection which the device cannot have processed.
+     */
+    private static class StaleConnectionException extends IOException {
+
+        StaleConnectionException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * HTTP response received on the persistent connection.
+     */
+    static class Response {
+
+        int responseCode;
+        boolean keepAlive;
+        byte[] body;
+        List<String> setCookieHeaders = new ArrayList<>();
+    }
+}
@@ -0,0 +1,268 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import android.util.Log;
+
+import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.listeners.ResponseListener;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport wrapper which correlates requests and responses, so that several requests can be outstanding
+ * on one transport.
+ *
+ * <p>Message id framing is a client side extension of the provisioning protocol, it is not part of
+ * the ESP-IDF protocomm protocol and stock firmware does not support it. It is used only with firmware
+ * which implements the matching framing and advertises {@link ESPConstants#CAPABILITY_MULTIPLEXING}.
+ * For such devices every request except the ones of session establishment is prefixed with a 2 byte
+ * big endian message id and the device echoes the id at the start of the response. The id is outside
+ * of the encrypted payload. Responses are delivered to the request with the same id, even if the device
+ * answers them in a different order. A response with an id which matches no outstanding request means
+ * that requests and responses are out of sync, all outstanding requests are failed.
+ * Other devices get strict serialization, the next request is only handed to the transport when the
+ * response of the previous one has arrived.
+ *
+ * <p>Requests are encrypted before they reach this transport. Security which shares one cipher stream
+ * for requests and responses (Security 1) must not be used with multiplexing, its requests are ordered
+ * by {@link com.espressif.provisioning.Session}.
+ */
+public class MultiplexTransport implements Transport {
+
+    private static final String TAG = "Espressif::" + MultiplexTransport.class.getSimpleName();
+
+    static final int HEADER_LENGTH = 2;
+    private static final int MAX_MESSAGE_ID = 0xFFFF;
+    private static final int DEFAULT_MAX_OUTSTANDING_REQUESTS = 4;
+
+    private final Transport transport;
+    private final boolean isMultiplexingEnabled;
+    private final int maxOutstandingRequests;
+    private final ArrayDeque<Request> waitingRequests = new ArrayDeque<>();
+    private final Map<Integer, Request> outstandingRequests = new HashMap<>();
+    private int outstandingRequestCount;
+    private int nextMessageId = 1;
+
+    /**
+     * @param transport             Transport used to reach the device.
+     * @param isMultiplexingEnabled true if device supports message ids, false for strict serialization.
+     */
+    public MultiplexTransport(Transport transport, boolean isMultiplexingEnabled) {
+        this(transport, isMultiplexingEnabled, DEFAULT_MAX_OUTSTANDING_REQUESTS);
+    }
+
+    /**
+     * @param transport              Transport used to reach the device.
+     * @param isMultiplexingEnabled  true if device supports message ids, false for strict serialization.
+     * @param maxOutstandingRequests Maximum number of requests sent to the device without a response.
+     *                               Ignored if multiplexing is disabled.
+     */
+    public MultiplexTransport(Transport transport, boolean isMultiplexingEnabled, int maxOutstandingRequests) {
+        this.transport = transport;
+        this.isMultiplexingEnabled = isMultiplexingEnabled;
+        this.maxOutstandingRequests = isMultiplexingEnabled ? Math.max(1, maxOutstandingRequests) : 1;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public boolean isMultiplexingEnabled() {
+        return isMultiplexingEnabled;
+    }
+
+    @Override
+    public void sendConfigData(String path, byte[] data, ResponseListener listener) {
+
+        Request request = new Request(path, data, listener);
+        synchronized (this) {
+            if (outstandingRequestCount >= maxOutstandingRequests) {
+                waitingRequests.add(request);
+                return;
+            }
+            startRequest(request);
+        }
+        send(request);
+    }
+
+    /**
+     * Must be called with lock held, request is sent after the lock is released.
+     */
+    private void startRequest(Request request) {
+
+        outstandingRequestCount++;
+        if (isFramed(request)) {
+            while (outstandingRequests.containsKey(nextMessageId)) {
+                nextMessageId = nextMessageId % MAX_MESSAGE_ID + 1;
+            }
+            request.messageId = nextMessageId;
+            nextMessageId = nextMessageId % MAX_MESSAGE_ID + 1;
+            outstandingRequests.put(request.messageId, request);
+        }
+    }
+
+    private void send(final Request request) {
+
+        byte[] data = isFramed(request) ? frame(request.messageId, request.data) : request.data;
+
+        transport.sendConfigData(request.path, data, new ResponseListener() {
+
+            @Override
+            public void onSuccess(byte[] returnData) {
+
+                if (!isFramed(request)) {
+                    finish(request, returnData, null);
+                    return;
+                }
+
+                if (returnData == null || returnData.length < HEADER_LENGTH) {
+                    finish(request, null, new RuntimeException("Response without message id"));
+                    return;
+                }
+
+                int messageId = ((returnData[0] & 0xFF) << 8) | (returnData[1] & 0xFF);
+                byte[] payload = new byte[returnData.length - HEADER_LENGTH];
+                System.arraycopy(returnData, HEADER_LENGTH, payload, 0, payload.length);
+
+                Request target;
+                boolean isLate;
+                synchronized (MultiplexTransport.this) {
+                    target = outstandingRequests.get(messageId);
+                    isLate = request.isFinished;
+                }
+                if (target == null) {
+                    if (isLate) {
+                        // Request of this exchange has already been failed.
+                        Log.w(TAG, "Ignoring late response of message " + messageId);
+                    } else {
+                        Log.e(TAG, "Response for unknown message id : " + messageId);
+                        failOutstandingRequests(new IOException("Response for unknown message id : " + messageId));
+                    }
+                    return;
+                }
+                if (target != request) {
+                    Log.d(TAG, "Response of message " + messageId + " received in place of " + request.messageId);
+                }
+                finish(target, payload, null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                finish(request, null, e);
+            }
+        });
+    }
+
+    private void finish(Request request, byte[] returnData, Exception e) {
+
+        Request next = null;
+        synchronized (this) {
+            if (request.isFinished) {
+                return;
+            }
+            request.isFinished = true;
+            outstandingRequestCount--;
+            if (isFramed(request)) {
+                outstandingRequests.remove(request.messageId);
+            }
+            if (!waitingRequests.isEmpty()) {
+                next = waitingRequests.poll();
+                startRequest(next);
+            }
+        }
+
+        if (request.listener != null) {
+            if (e == null) {
+                request.listener.onSuccess(returnData);
+            } else {
+                request.listener.onFailure(e);
+            }
+        }
+
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    /**
+     * Fail all outstanding requests and start waiting ones, e.g. when a response can not be matched
+     * to its request. Responses of the failed requests which arrive later are ignored.
+     */
+    private void failOutstandingRequests(Exception e) {
+
+        List<Request> failedRequests = new ArrayList<>();
+        List<Request> nextRequests = new ArrayList<>();
+        synchronized (this) {
+            for (Request request : outstandingRequests.values()) {
+                request.isFinished = true;
+                failedRequests.add(request);
+            }
+            outstandingRequests.clear();
+            // Unframed requests of session establishment are still counted.
+            outstandingRequestCount -= failedRequests.size();
+            while (outstandingRequestCount < maxOutstandingRequests && !waitingRequests.isEmpty()) {
+                Request next = waitingRequests.poll();
+                startRequest(next);
+                nextRequests.add(next);
+            }
+        }
+
+        for (Request request : failedRequests) {
+            if (request.listener != null) {
+                request.listener.onFailure(e);
+            }
+        }
+        for (Request request : nextRequests) {
+            send(request);
+        }
+    }
+
+    private boolean isFramed(Request request) {
+        return isMultiplexingEnabled && !ESPConstants.HANDLER_PROV_SESSION.equals(request.path);
+    }
+
+    static byte[] frame(int messageId, byte[] data) {
+
+        int length = data == null ? 0 : data.length;
+        byte[] framed = new byte[HEADER_LENGTH + length];
+        framed[0] = (byte) (messageId >> 8);
+        framed[1] = (byte) messageId;
+        if (length > 0) {
+            System.arraycopy(data, 0, framed, HEADER_LENGTH, length);
+        }
+        return framed;
+    }
+
+    private static class Request {
+
+        final String path;
+        final byte[] data;
+        final ResponseListener listener;
+        int messageId;
+        boolean isFinished;
+
+        Request(String path, byte[] data, ResponseListener listener) {
+            this.path = path;
+            this.data = data;
+            this.listener = listener;
+        }
+    }
+}
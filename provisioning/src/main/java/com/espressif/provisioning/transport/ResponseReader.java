@@ -0,0 +1,98 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads HTTP response bodies with as few allocations and copies as possible.
+ *
+ * <p>If the length of the body is known from Content-Length, the result array is allocated
+ * once with the exact size and the stream is read straight into it.
+ * Otherwise the body is read into a pooled per-thread buffer, which is copied once into
+ * the exact size result array. The pooled buffer is never handed out, because the
+ * response array is kept by the listeners.
+ */
+class ResponseReader {
+
+    private static final int INITIAL_POOL_BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> pooledBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_POOL_BUFFER_SIZE];
+        }
+    };
+
+    private ResponseReader() {
+    }
+
+    /**
+     * Read response body.
+     *
+     * @param inputStream   Stream positioned at the beginning of the body.
+     * @param contentLength Value of Content-Length header or -1 if it is unknown,
+     *                      in which case the body ends with the stream.
+     * @return Response body.
+     * @throws IOException if stream ends before Content-Length bytes are read.
+     */
+    static byte[] readBody(InputStream inputStream, int contentLength) throws IOException {
+
+        if (contentLength >= 0) {
+            byte[] body = new byte[contentLength];
+            readFully(inputStream, body, 0, contentLength);
+            return body;
+        }
+        return readUntilEof(inputStream);
+    }
+
+    /**
+     * Read exactly length bytes into destination array.
+     */
+    static void readFully(InputStream inputStream, byte[] destination, int offset, int length) throws IOException {
+
+        int end = offset + length;
+        while (offset < end) {
+            int n = inputStream.read(destination, offset, end - offset);
+            if (n < 0) {
+                throw new EOFException("Connection closed before response was complete");
+            }
+            offset += n;
+        }
+    }
+
+    private static byte[] readUntilEof(InputStream inputStream) throws IOException {
+
+        byte[] buffer = pooledBuffer.get();
+        int length = 0;
+        int n;
+
+        while ((n = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+            length += n;
+            if (length == buffer.length) {
+                byte[] biggerBuffer = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, biggerBuffer, 0, length);
+                buffer = biggerBuffer;
+                pooledBuffer.set(buffer);
+            }
+        }
+
+        byte[] body = new byte[length];
+        System.arraycopy(buffer, 0, body, 0, length);
+        return body;
+    }
+}
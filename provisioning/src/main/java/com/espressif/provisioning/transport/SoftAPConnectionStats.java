@@ -0,0 +1,109 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+/**
+ * Timing counters of the keep-alive SoftAP connection.
+ * Requests which had to open a new TCP connection are counted separately
+ * from requests which reused the already open connection, so that the cost of
+ * the connection setup can be compared with the cost of a reused round trip.
+ */
+public class SoftAPConnectionStats {
+
+    private int connectCount;
+    private int reconnectCount;
+    private long totalConnectTimeMs;
+    private int newConnectionRequestCount;
+    private long newConnectionRequestTimeMs;
+    private int reusedRequestCount;
+    private long reusedRequestTimeMs;
+
+    synchronized void recordConnect(long connectTimeMs, boolean isReconnect) {
+        connectCount++;
+        totalConnectTimeMs += connectTimeMs;
+        if (isReconnect) {
+            reconnectCount++;
+        }
+    }
+
+    synchronized void recordRequest(long requestTimeMs, boolean isReused) {
+        if (isReused) {
+            reusedRequestCount++;
+            reusedRequestTimeMs += requestTimeMs;
+        } else {
+            newConnectionRequestCount++;
+            newConnectionRequestTimeMs += requestTimeMs;
+        }
+    }
+
+    /**
+     * @return Number of TCP connections opened to the device.
+     */
+    public synchronized int getConnectCount() {
+        return connectCount;
+    }
+
+    /**
+     * @return Number of connections re-opened after the device dropped the previous one.
+     */
+    public synchronized int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * @return Average time in milliseconds spent in TCP connection setup.
+     */
+    public synchronized long getAverageConnectTimeMs() {
+        return connectCount == 0 ? 0 : totalConnectTimeMs / connectCount;
+    }
+
+    /**
+     * @return Number of requests which were sent on a newly opened connection.
+     */
+    public synchronized int getNewConnectionRequestCount() {
+        return newConnectionRequestCount;
+    }
+
+    /**
+     * @return Average round trip time in milliseconds (including connection setup) of requests sent on a new connection.
+     */
+    public synchronized long getAverageNewConnectionRequestTimeMs() {
+        return newConnectionRequestCount == 0 ? 0 : newConnectionRequestTimeMs / newConnectionRequestCount;
+    }
+
+    /**
+     * @return Number of requests which reused an already open connection.
+     */
+    public synchronized int getReusedRequestCount() {
+        return reusedRequestCount;
+    }
+
+    /**
+     * @return Average round trip time in milliseconds of requests sent on a reused connection.
+     */
+    public synchronized long getAverageReusedRequestTimeMs() {
+        return reusedRequestCount == 0 ? 0 : reusedRequestTimeMs / reusedRequestCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Connections : " + connectCount
+                + " (reconnects : " + reconnectCount + ", avg connect : " + getAverageConnectTimeMs() + " ms)"
+                + ", new connection requests : " + newConnectionRequestCount
+                + " (avg " + getAverageNewConnectionRequestTimeMs() + " ms)"
+                + ", reused connection requests : " + reusedRequestCount
+                + " (avg " + getAverageReusedRequestTimeMs() + " ms)";
+    }
+}
@@ -0,0 +1,543 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import android.net.Network;
+import android.util.Log;
+
+import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.listeners.ResponseListener;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Non-blocking HTTP Transport implementation of the Transport protocol.
+ * All requests are sent on one HTTP/1.1 connection driven by a selector thread.
+ * Requests are pipelined : up to a configurable number of requests are written to the
+ * connection without waiting for the previous response. Responses arrive in the order
+ * of the requests and are handed back to the matching ResponseListener.
+ *
+ * <p>Requests are always written in the order in which {@link #sendConfigData} is called,
+ * so that stream cipher state of the Security implementation stays in sync with the device.
+ */
+public class SoftAPNioTransport implements Transport {
+
+    private static final String TAG = "Espressif::" + SoftAPNioTransport.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_PIPELINED_REQUESTS = 4;
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final int SELECT_TIMEOUT = 500;
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int DEFAULT_PORT = 80;
+
+    private final String baseUrl;
+    private final String host;
+    private final int port;
+    private final Network network;
+    private final int maxPipelinedRequests;
+
+    // Accessed from caller threads and selector thread.
+    private final LinkedBlockingDeque<PendingRequest> pendingRequests = new LinkedBlockingDeque<>();
+    private final ExecutorService dispatcherThreadPool = Executors.newSingleThreadExecutor();
+    // Written under the lock of this transport, so that no request is queued after the selector loop has ended.
+    private volatile boolean isClosed;
+    private final SoftAPSessionStore sessionStore;
+
+    // Accessed from selector thread only.
+    private final ArrayDeque<PendingRequest> inFlightRequests = new ArrayDeque<>();
+    private final ArrayDeque<PendingRequest> outgoingRequests = new ArrayDeque<>();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private SocketChannel channel;
+    private int responsesOnChannel;
+    private long connectStartTime;
+    private long lastActivityTime;
+
+    private Selector selector;
+    private Thread selectorThread;
+
+    /**
+     * Initialise non-blocking HTTP transport with default base URL of the device.
+     */
+    public SoftAPNioTransport() {
+        this(ESPConstants.DEFAULT_WIFI_BASE_URL, DEFAULT_MAX_PIPELINED_REQUESTS);
+    }
+
+    /**
+     * Initialise non-blocking HTTP transport.
+     *
+     * @param baseUrl              Host address and port of the device. e.g. "192.168.4.1:80"
+     * @param maxPipelinedRequests Maximum number of requests sent before their responses are received.
+     *                             Use 1 to disable pipelining.
+     */
+    public SoftAPNioTransport(String baseUrl, int maxPipelinedRequests) {
+        this(null, baseUrl, maxPipelinedRequests);
+    }
+
+    /**
+     * Initialise non-blocking HTTP transport bound to given network and device address.
+     *
+     * @param network              Network on which device is reachable or null to use default network of the process.
+     * @param baseUrl              Host address and port of the device. e.g. "192.168.4.1:80"
+     * @param maxPipelinedRequests Maximum number of requests sent before their responses are received.
+     *                             Use 1 to disable pipelining.
+     */
+    public SoftAPNioTransport(Network network, String baseUrl, int maxPipelinedRequests) {
+
+        this.network = network;
+        this.baseUrl = baseUrl;
+        int index = baseUrl.lastIndexOf(':');
+        if (index > 0) {
+            host = baseUrl.substring(0, index);
+            port = Integer.parseInt(baseUrl.substring(index + 1));
+        } else {
+            host = baseUrl;
+            port = DEFAULT_PORT;
+        }
+        this.maxPipelinedRequests = Math.max(1, maxPipelinedRequests);
+        this.sessionStore = new SoftAPSessionStore(baseUrl);
+    }
+
+    /***
+     * Non-blocking HTTP implementation of the Transport protocol.
+     * This method only queues the request and returns immediately.
+     * @param path path of the config endpoint.
+     * @param data config data to be sent
+     * @param listener listener implementation which receives events when response is received.
+     */
+    @Override
+    public void sendConfigData(String path, byte[] data, ResponseListener listener) {
+
+        // Checked and queued under one lock, so that a request is either failed here
+        // or drained by the selector loop when the transport is closed.
+        Exception failure;
+        synchronized (this) {
+            if (isClosed) {
+                failure = new RuntimeException("Transport is closed");
+            } else {
+                try {
+                    ensureSelectorThread();
+                    pendingRequests.add(new PendingRequest(path, data, listener));
+                    selector.wakeup();
+                    return;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to open selector : " + e.getMessage());
+                    failure = e;
+                }
+            }
+        }
+        listener.onFailure(failure);
+    }
+
+    /**
+     * @return Host address and port of the device.
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getMaxPipelinedRequests() {
+        return maxPipelinedRequests;
+    }
+
+    /**
+     * @return Network to which transport is bound or null if it uses default network of the process.
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Close the connection and stop the selector thread.
+     * Requests which are not yet answered are failed and session cookies are dropped.
+     */
+    public synchronized void close() {
+
+        isClosed = true;
+        sessionStore.clear();
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Forget session cookies of the device. Should be called when the device is disconnected,
+     * so that the next device reached through this transport starts with a clean session.
+     * Cookies are kept per transport, so sessions of other devices are not affected.
+     */
+    public void clearSession() {
+        sessionStore.clear();
+    }
+
+    private synchronized void ensureSelectorThread() throws IOException {
+
+        if (selectorThread != null) {
+            return;
+        }
+        selector = Selector.open();
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runSelectorLoop();
+            }
+        }, TAG);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    private void runSelectorLoop() {
+
+        while (!isClosed) {
+            try {
+                if (channel == null && !pendingRequests.isEmpty()) {
+                    openChannel();
+                }
+                if (channel != null && channel.isConnected()) {
+                    queueRequests();
+                }
+                updateInterestOps();
+
+                selector.select(SELECT_TIMEOUT);
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isConnectable()) {
+                        finishConnect();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read();
+                    }
+                }
+                checkTimeout();
+            } catch (IOException e) {
+                Log.e(TAG, "Connection error : " + e.getMessage());
+                failInFlightRequests(e);
+                closeChannel();
+            }
+        }
+
+        closeChannel();
+        RuntimeException closedException = new RuntimeException("Transport is closed");
+        failInFlightRequests(closedException);
+        PendingRequest request;
+        while ((request = pendingRequests.poll()) != null) {
+            dispatchFailure(request, closedException);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close selector : " + e.getMessage());
+        }
+        dispatcherThreadPool.shutdown();
+    }
+
+    private void openChannel() throws IOException {
+
+        Log.d(TAG, "Connecting to " + host + ":" + port);
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        if (network != null) {
+            network.bindSocket(channel.socket());
+        }
+        responsesOnChannel = 0;
+        connectStartTime = System.currentTimeMillis();
+        lastActivityTime = connectStartTime;
+        if (channel.connect(new InetSocketAddress(host, port))) {
+            Log.d(TAG, "Connected");
+            channel.register(selector, SelectionKey.OP_READ);
+        } else {
+            channel.register(selector, SelectionKey.OP_CONNECT);
+        }
+    }
+
+    private void finishConnect() throws IOException {
+
+        if (channel.finishConnect()) {
+            long connectTime = System.currentTimeMillis() - connectStartTime;
+            Log.d(TAG, "Connected in " + connectTime + " ms");
+            lastActivityTime = System.currentTimeMillis();
+            queueRequests();
+        }
+    }
+
+    /**
+     * Move requests from the pending queue to the connection, up to the pipelining limit.
+     * Requests are encoded only when they are written, see {@link #write()}.
+     */
+    private void queueRequests() {
+
+        while (inFlightRequests.size() < maxPipelinedRequests) {
+
+            PendingRequest request = pendingRequests.poll();
+            if (request == null) {
+                break;
+            }
+            outgoingRequests.add(request);
+            inFlightRequests.add(request);
+        }
+    }
+
+    /**
+     * Encode request line, headers and body of the request.
+     * This is done on the selector thread right before the first byte of the request is written,
+     * so that the cookie header carries the cookies set by all responses received so far.
+     */
+    private ByteBuffer encode(PendingRequest request) {
+
+        byte[] head = KeepAliveHttpConnection.buildRequestHead(host, port, request.path,
+                request.data.length, sessionStore.getCookieHeader(request.path));
+        ByteBuffer buffer = ByteBuffer.allocate(head.length + request.data.length);
+        buffer.put(head);
+        buffer.put(request.data);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void updateInterestOps() {
+
+        if (channel == null) {
+            return;
+        }
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null || !key.isValid() || !channel.isConnected()) {
+            return;
+        }
+        int ops = SelectionKey.OP_READ;
+        if (!outgoingRequests.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private void write() throws IOException {
+
+        while (!outgoingRequests.isEmpty()) {
+            PendingRequest request = outgoingRequests.peek();
+            if (request.encoded == null) {
+                request.encoded = encode(request);
+                request.isSentOnReusedConnection = responsesOnChannel > 0;
+            }
+            channel.write(request.encoded);
+            if (request.encoded.hasRemaining()) {
+                // Socket buffer is full, wait for next writable event.
+                return;
+            }
+            outgoingRequests.poll();
+            request.encoded = null;
+            lastActivityTime = System.currentTimeMillis();
+        }
+    }
+
+    private void read() throws IOException {
+
+        if (!readBuffer.hasRemaining()) {
+            ByteBuffer biggerBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            biggerBuffer.put(readBuffer);
+            readBuffer = biggerBuffer;
+        }
+
+        int n = channel.read(readBuffer);
+        boolean isEndOfData = n < 0;
+        if (n > 0) {
+            lastActivityTime = System.currentTimeMillis();
+        }
+
+        readBuffer.flip();
+        boolean isClosedByResponse = false;
+
+        while (!inFlightRequests.isEmpty()) {
+            KeepAliveHttpConnection.Response response = HttpResponseParser.parse(readBuffer, isEndOfData);
+            if (response == null) {
+                break;
+            }
+            responsesOnChannel++;
+            sessionStore.storeCookies(response.setCookieHeaders);
+            dispatchResponse(inFlightRequests.poll(), response);
+            if (!response.keepAlive) {
+                isClosedByResponse = true;
+                break;
+            }
+        }
+        boolean hasPartialResponse = readBuffer.hasRemaining();
+        readBuffer.compact();
+
+        if (isClosedByResponse) {
+            Log.d(TAG, "Connection closed by device after response");
+            // Requests which were pipelined after a "Connection: close" response have not been
+            // processed by the device. Send them again on a new connection, keeping the order.
+            requeueInFlightRequests();
+            closeChannel();
+        } else if (isEndOfData) {
+            closeWithoutResponse(hasPartialResponse);
+        }
+    }
+
+    /**
+     * Handle end of data while requests are waiting for their response. ESP httpd closes the connection
+     * without response when a handler fails, so the device may have processed the first request and
+     * such a request is failed. A written request is sent once more only if it was written on a connection
+     * which had already been used for earlier requests and no byte of its response was received, as the
+     * device may have closed the idle connection before it got the request, see {@link KeepAliveHttpConnection}.
+     * Requests which were not written yet are sent on the next connection.
+     */
+    private void closeWithoutResponse(boolean hasPartialResponse) {
+
+        if (!inFlightRequests.isEmpty()) {
+            Log.d(TAG, "Connection closed by device without response");
+        }
+        ArrayDeque<PendingRequest> requests = new ArrayDeque<>(inFlightRequests);
+        inFlightRequests.clear();
+        boolean isHead = true;
+        for (PendingRequest request : requests) {
+            boolean isWritten = request.encoded != null || !outgoingRequests.contains(request);
+            if (!isWritten) {
+                inFlightRequests.add(request);
+            } else if (request.isSentOnReusedConnection && !request.isRetried && !(isHead && hasPartialResponse)) {
+                request.isRetried = true;
+                inFlightRequests.add(request);
+            } else {
+                dispatchFailure(request, new RuntimeException("Error ! Connection Lost"));
+            }
+            isHead = false;
+        }
+        requeueInFlightRequests();
+        closeChannel();
+    }
+
+    /**
+     * Put requests waiting for their response back at the head of the pending queue, keeping the order.
+     */
+    private void requeueInFlightRequests() {
+
+        Iterator<PendingRequest> iterator = inFlightRequests.descendingIterator();
+        while (iterator.hasNext()) {
+            PendingRequest request = iterator.next();
+            // Encoded again with the cookies of the new connection.
+            request.encoded = null;
+            pendingRequests.addFirst(request);
+        }
+        inFlightRequests.clear();
+    }
+
+    private void checkTimeout() throws IOException {
+
+        if (channel == null) {
+            return;
+        }
+        long elapsedTime = System.currentTimeMillis() - lastActivityTime;
+        if (!channel.isConnected() && elapsedTime > CONNECT_TIMEOUT) {
+            throw new IOException("Connect timeout");
+        }
+        if (!inFlightRequests.isEmpty() && elapsedTime > READ_TIMEOUT) {
+            throw new IOException("Read timeout");
+        }
+    }
+
+    private void closeChannel() {
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close channel : " + e.getMessage());
+            }
+        }
+        channel = null;
+        outgoingRequests.clear();
+        readBuffer.clear();
+    }
+
+    private void failInFlightRequests(Exception e) {
+
+        PendingRequest request;
+        while ((request = inFlightRequests.poll()) != null) {
+            dispatchFailure(request, new RuntimeException("Error ! Connection Lost", e));
+        }
+        // Requests which were not yet written can not be sent without the connection.
+        if (channel == null || !channel.isConnected()) {
+            while ((request = pendingRequests.poll()) != null) {
+                dispatchFailure(request, new RuntimeException("Error ! Connection Lost", e));
+            }
+        }
+    }
+
+    private void dispatchResponse(final PendingRequest request, final KeepAliveHttpConnection.Response response) {
+
+        dispatcherThreadPool.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (response.responseCode == HttpURLConnection.HTTP_OK) {
+                    request.listener.onSuccess(response.body);
+                } else {
+                    request.listener.onFailure(new RuntimeException("Error ! Response code : " + response.responseCode));
+                }
+            }
+        });
+    }
+
+    private void dispatchFailure(final PendingRequest request, final Exception e) {
+
+        if (dispatcherThreadPool.isShutdown()) {
+            request.listener.onFailure(e);
+            return;
+        }
+        dispatcherThreadPool.submit(new Runnable() {
+            @Override
+            public void run() {
+                request.listener.onFailure(e);
+            }
+        });
+    }
+
+    private static class PendingRequest {
+
+        final String path;
+        final byte[] data;
+        final ResponseListener listener;
+        ByteBuffer encoded;
+        // Whether request was written after a response had been received on the same connection.
+        boolean isSentOnReusedConnection;
+        // Whether request was sent again after the device closed the connection without response.
+        boolean isRetried;
+
+        PendingRequest(String path, byte[] data, ResponseListener listener) {
+            this.path = path;
+            this.data = data;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright 2020 Espressif Systems (Shanghai) PTE LTD
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.espressif.provisioning.transport;
+
+import java.net.HttpCookie;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Session cookies of one SoftAP transport.
+ * Every transport keeps its own store, so devices which are reachable at the same base URL
+ * through different networks never share a session, and cookies are released together with
+ * the transport. The Cookie header is serialized once when cookies change and reused for
+ * every request, unless a cookie is restricted to a path or expires, in which case the header
+ * is built for each request.
+ */
+class SoftAPSessionStore {
+
+    private final String baseUrl;
+    private final LinkedHashMap<String, HttpCookie> cookies = new LinkedHashMap<>();
+    private String cookieHeader;
+    private boolean hasRestrictedCookies;
+
+    /**
+     * @param baseUrl Host address and port of the device.
+     */
+    SoftAPSessionStore(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Get value of the Cookie header for a request.
+     * Expired cookies and cookies of other paths are left out.
+     *
+     * @param path Path of the endpoint, without leading '/'.
+     * @return Value of the Cookie header or null if there is no cookie for the request.
+     */
+    synchronized String getCookieHeader(String path) {
+
+        if (!hasRestrictedCookies) {
+            return cookieHeader;
+        }
+
+        String requestPath = "/" + path;
+        StringBuilder header = new StringBuilder();
+        Iterator<HttpCookie> iterator = cookies.values().iterator();
+        while (iterator.hasNext()) {
+            HttpCookie httpCookie = iterator.next();
+            if (httpCookie.hasExpired()) {
+                iterator.remove();
+                continue;
+            }
+            if (matchesPath(httpCookie, requestPath)) {
+                appendCookie(header, httpCookie);
+            }
+        }
+        return header.length() > 0 ? header.toString() : null;
+    }
+
+    /**
+     * Store cookies received in Set-Cookie headers of a response.
+     * A cookie which has already expired deletes the stored cookie with the same name.
+     *
+     * @param setCookieHeaders Values of Set-Cookie headers, may be null.
+     */
+    synchronized void storeCookies(List<String> setCookieHeaders) {
+
+        if (setCookieHeaders == null || setCookieHeaders.isEmpty()) {
+            return;
+        }
+
+        for (String cookie : setCookieHeaders) {
+            HttpCookie httpCookie = HttpCookie.parse(cookie).get(0);
+            // Default version of HttpCookie is 1. In version 1, quotes will be added.
+            // So set version 0 so that quotes will not be added.
+            httpCookie.setVersion(0);
+            if (httpCookie.hasExpired()) {
+                cookies.remove(httpCookie.getName());
+            } else {
+                cookies.put(httpCookie.getName(), httpCookie);
+            }
+        }
+
+        // While joining the Cookies, use ',' or ';' as needed. Most of the servers are using ';'
+        StringBuilder header = new StringBuilder();
+        hasRestrictedCookies = false;
+        for (HttpCookie httpCookie : cookies.values()) {
+            appendCookie(header, httpCookie);
+            if (httpCookie.getMaxAge() >= 0 || !matchesPath(httpCookie, "/")) {
+                hasRestrictedCookies = true;
+            }
+        }
+        cookieHeader = header.length() > 0 ? header.toString() : null;
+    }
+
+    /**
+     * Forget the session cookies of the device, e.g. when the device is disconnected.
+     */
+    synchronized void clear() {
+        cookies.clear();
+        cookieHeader = null;
+        hasRestrictedCookies = false;
+    }
+
+    private static boolean matchesPath(HttpCookie httpCookie, String requestPath) {
+
+        String cookiePath = httpCookie.getPath();
+        if (cookiePath == null || cookiePath.isEmpty() || cookiePath.equals("/")) {
+            return true;
+        }
+        if (!requestPath.startsWith(cookiePath)) {
+            return false;
+        }
+        return requestPath.length() == cookiePath.length() || cookiePath.endsWith("/")
+                || requestPath.charAt(cookiePath.length()) == '/';
+    }
+
+    private static void appendCookie(StringBuilder header, HttpCookie httpCookie) {
+
+        if (header.length() > 0) {
+            header.append(';');
+        }
+        header.append(httpCookie);
+    }
+}
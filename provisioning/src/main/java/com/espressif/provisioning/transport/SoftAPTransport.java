@@ -15,25 +15,28 @@
 
 package com.espressif.provisioning.transport;
 
-import android.text.TextUtils;
+import android.net.Network;
 import android.util.Log;
 
 import com.espressif.provisioning.ESPConstants;
 import com.espressif.provisioning.listeners.ResponseListener;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.CookieManager;
-import java.net.HttpCookie;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
 
 /**
  * HTTP Transport implementation of the Transport protocol
@@ -45,27 +48,168 @@ public class SoftAPTransport implements Transport {
     private static final String TAG = "Espressif::" + SoftAPTransport.class.getSimpleName();
     private static final String SET_COOKIE_HEADER = "Set-Cookie";
     private static final String COOKIE_HEADER = "Cookie";
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
 
-    private String baseUrl = ESPConstants.DEFAULT_WIFI_BASE_URL;
-    private ExecutorService workerThreadPool;
-    private static CookieManager cookieManager;
+    private final String baseUrl;
+    private final Network network;
+    private final ExecutorService workerThreadPool;
+    private final SoftAPSessionStore sessionStore;
+    private boolean isKeepAliveEnabled;
+    private KeepAliveHttpConnection keepAliveConnection;
 
     /**
      * Initialise HTTP transport with baseUrl which
      * is used as host address during HTTP communication
      */
     public SoftAPTransport() {
-        this.workerThreadPool = Executors.newSingleThreadExecutor();
-        if (cookieManager == null) {
-            cookieManager = new CookieManager();
+        this(false);
+    }
+
+    /**
+     * Initialise HTTP transport with baseUrl which
+     * is used as host address during HTTP communication
+     *
+     * @param isKeepAliveEnabled true to send all requests on one persistent HTTP/1.1 connection.
+     */
+    public SoftAPTransport(boolean isKeepAliveEnabled) {
+        this(null, ESPConstants.DEFAULT_WIFI_BASE_URL, isKeepAliveEnabled);
+    }
+
+    /**
+     * Initialise HTTP transport bound to given network and device address.
+     * Each instance sends its requests on its own worker thread, so several devices
+     * can be provisioned at the same time, each through its own transport.
+     *
+     * @param network Network on which device is reachable or null to use default network of the process.
+     * @param baseUrl Host address and port of the device, e.g. "192.168.4.1:80".
+     */
+    public SoftAPTransport(Network network, String baseUrl) {
+        this(network, baseUrl, false);
+    }
+
+    /**
+     * Initialise HTTP transport bound to given network and device address.
+     *
+     * @param network            Network on which device is reachable or null to use default network of the process.
+     * @param baseUrl            Host address and port of the device, e.g. "192.168.4.1:80".
+     * @param isKeepAliveEnabled true to send all requests on one persistent HTTP/1.1 connection.
+     */
+    public SoftAPTransport(Network network, final String baseUrl, boolean isKeepAliveEnabled) {
+        this.network = network;
+        this.baseUrl = baseUrl;
+        // One worker thread per device, which is released while the device is idle.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "SoftAPTransport-" + baseUrl);
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.workerThreadPool = executor;
+        this.sessionStore = new SoftAPSessionStore(baseUrl);
+        setKeepAliveEnabled(isKeepAliveEnabled);
+    }
+
+    /**
+     * @return Host address and port of the device.
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * @return Network to which transport is bound or null if it uses default network of the process.
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Enable / disable keep-alive mode. In keep-alive mode one HTTP/1.1 connection to the device
+     * is opened and reused for the whole handshake and provisioning sequence.
+     * Connection is opened again transparently if device drops it.
+     *
+     * @param isKeepAliveEnabled true to enable keep-alive mode.
+     */
+    public synchronized void setKeepAliveEnabled(boolean isKeepAliveEnabled) {
+
+        this.isKeepAliveEnabled = isKeepAliveEnabled;
+        if (isKeepAliveEnabled) {
+            if (keepAliveConnection == null) {
+                keepAliveConnection = new KeepAliveHttpConnection(baseUrl,
+                        network != null ? network.getSocketFactory() : SocketFactory.getDefault());
+            }
+        } else if (keepAliveConnection != null) {
+            keepAliveConnection.close();
+            keepAliveConnection = null;
+        }
+    }
+
+    public synchronized boolean isKeepAliveEnabled() {
+        return isKeepAliveEnabled;
+    }
+
+    /**
+     * Get connect time and reuse time counters of keep-alive mode.
+     *
+     * @return Connection stats or null if keep-alive mode is not enabled.
+     */
+    public synchronized SoftAPConnectionStats getConnectionStats() {
+        return keepAliveConnection == null ? null : keepAliveConnection.getStats();
+    }
+
+    /**
+     * Close the persistent connection of keep-alive mode, if it is open.
+     */
+    public synchronized void disconnect() {
+
+        if (keepAliveConnection != null) {
+            Log.d(TAG, "Keep-alive connection stats : " + keepAliveConnection.getStats());
+            keepAliveConnection.close();
         }
     }
 
+    /**
+     * Close the transport : close the persistent connection, forget session cookies and stop
+     * the worker thread once queued requests are sent. Requests sent after close are failed.
+     */
+    public void close() {
+
+        disconnect();
+        clearSession();
+        workerThreadPool.shutdown();
+    }
+
+    /**
+     * Forget session cookies of the device. Should be called when the device is disconnected,
+     * so that the next device reached through this transport starts with a clean session.
+     * Cookies are kept per transport, so sessions of other devices are not affected.
+     */
+    public void clearSession() {
+        sessionStore.clear();
+    }
+
+    private synchronized KeepAliveHttpConnection getKeepAliveConnection() {
+        return keepAliveConnection;
+    }
+
     private byte[] sendPostRequest(String path, byte[] data, final ResponseListener listener) {
+
+        KeepAliveHttpConnection connection = getKeepAliveConnection();
+        if (connection != null) {
+            return sendPostRequestOnKeepAliveConnection(connection, path, data, listener);
+        }
+
         byte[] responseBytes = null;
         try {
             URL url = new URL("http://" + baseUrl + "/" + path);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            HttpURLConnection urlConnection;
+            if (network != null) {
+                urlConnection = (HttpURLConnection) network.openConnection(url);
+            } else {
+                urlConnection = (HttpURLConnection) url.openConnection();
+            }
             urlConnection.setDoOutput(true);
 
             urlConnection.setRequestMethod("POST");
@@ -73,13 +217,9 @@ public class SoftAPTransport implements Transport {
             urlConnection.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
             urlConnection.setConnectTimeout(5000);
 
-            if (cookieManager.getCookieStore().getCookies().size() > 0) {
-
-                Log.d(TAG, "Cookie - Name : " + cookieManager.getCookieStore().getCookies().get(0).getName());
-                Log.d(TAG, "Cookie - Value : " + cookieManager.getCookieStore().getCookies().get(0).getValue());
-                // While joining the Cookies, use ',' or ';' as needed. Most of the servers are using ';'
-                urlConnection.setRequestProperty(COOKIE_HEADER,
-                        TextUtils.join(";", cookieManager.getCookieStore().getCookies()));
+            String cookieHeader = sessionStore.getCookieHeader(path);
+            if (cookieHeader != null) {
+                urlConnection.setRequestProperty(COOKIE_HEADER, cookieHeader);
             }
 
             OutputStream os = urlConnection.getOutputStream();
@@ -88,27 +228,16 @@ public class SoftAPTransport implements Transport {
 
             int responseCode = urlConnection.getResponseCode();
             Map<String, List<String>> headerFields = urlConnection.getHeaderFields();
-            List<String> cookiesHeader = headerFields.get(SET_COOKIE_HEADER);
-
-            if (cookiesHeader != null) {
-                for (String cookie : cookiesHeader) {
-                    HttpCookie httpCookie = HttpCookie.parse(cookie).get(0);
-                    // Default version of HttpCookie is 1. In version 1, quotes will be added.
-                    // So set version 0 so that quotes will not be added.
-                    httpCookie.setVersion(0);
-                    cookieManager.getCookieStore().add(null, httpCookie);
-                }
-            }
+            sessionStore.storeCookies(headerFields.get(SET_COOKIE_HEADER));
 
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                int n;
-                byte[] byteChunk = new byte[4096];
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
                 InputStream is = urlConnection.getInputStream();
-                while ((n = is.read(byteChunk)) > 0) {
-                    outputStream.write(byteChunk, 0, n);
+                try {
+                    responseBytes = ResponseReader.readBody(is, urlConnection.getContentLength());
+                } finally {
+                    // Closing fully read stream allows the connection to be reused.
+                    is.close();
                 }
-                responseBytes = outputStream.toByteArray();
             }
         } catch (MalformedURLException e) {
             Log.e(TAG, e.getMessage());
@@ -127,6 +256,24 @@ public class SoftAPTransport implements Transport {
         return responseBytes;
     }
 
+    private byte[] sendPostRequestOnKeepAliveConnection(KeepAliveHttpConnection connection, String path,
+                                                         byte[] data, final ResponseListener listener) {
+        byte[] responseBytes = null;
+        try {
+            KeepAliveHttpConnection.Response response = connection.post(path, data, sessionStore.getCookieHeader(path));
+            sessionStore.storeCookies(response.setCookieHeaders);
+
+            if (response.responseCode == HttpURLConnection.HTTP_OK) {
+                responseBytes = response.body;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, e.getMessage());
+            e.printStackTrace();
+            listener.onFailure(new RuntimeException("Error ! Connection Lost"));
+        }
+        return responseBytes;
+    }
+
     /***
      * HTTP implementation of the Transport protocol
      * @param path path of the config endpoint.
@@ -135,17 +282,21 @@ public class SoftAPTransport implements Transport {
      */
     @Override
     public void sendConfigData(final String path, final byte[] data, final ResponseListener listener) {
-        this.workerThreadPool
-                .submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            byte[] returnData = sendPostRequest(path, data, listener);
-                            listener.onSuccess(returnData);
-                        } catch (Exception e) {
-                            listener.onFailure(e);
+        try {
+            this.workerThreadPool
+                    .submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                byte[] returnData = sendPostRequest(path, data, listener);
+                                listener.onSuccess(returnData);
+                            } catch (Exception e) {
+                                listener.onFailure(e);
+                            }
                         }
-                    }
-                });
+                    });
+        } catch (RejectedExecutionException e) {
+            listener.onFailure(new RuntimeException("Transport is closed", e));
+        }
     }
 }
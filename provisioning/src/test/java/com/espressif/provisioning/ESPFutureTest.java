@@ -0,0 +1,86 @@
+package com.espressif.provisioning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ESPFutureTest {
+
+    @Test
+    public void composedFuturesCompleteInOrder() throws Exception {
+
+        final ESPFuture<Integer> first = new ESPFuture<>();
+        final ESPFuture<String> second = new ESPFuture<>();
+
+        ESPFuture<String> result = first.thenApply(new ESPFuture.Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer value) {
+                return value * 2;
+            }
+        }).thenCompose(new ESPFuture.Function<Integer, ESPFuture<String>>() {
+            @Override
+            public ESPFuture<String> apply(Integer value) {
+                return second.thenApply(new ESPFuture.Function<String, String>() {
+                    @Override
+                    public String apply(String suffix) {
+                        return value + suffix;
+                    }
+                });
+            }
+        });
+
+        first.complete(21);
+        second.complete("!");
+        assertEquals("42!", result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void allOfKeepsOrderOfResults() throws Exception {
+
+        ESPFuture<byte[]> first = new ESPFuture<>();
+        ESPFuture<byte[]> second = new ESPFuture<>();
+        ESPFuture<List<Object>> all = ESPFuture.allOf(first, second);
+
+        second.complete(new byte[]{2});
+        first.complete(new byte[]{1});
+
+        List<Object> results = all.get();
+        assertArrayEquals(new byte[]{1}, (byte[]) results.get(0));
+        assertArrayEquals(new byte[]{2}, (byte[]) results.get(1));
+    }
+
+    @Test
+    public void timeoutCancelsUpstream() throws Exception {
+
+        ESPFuture<Void> request = new ESPFuture<>();
+        ESPFuture<Void> result = request.thenApply(new ESPFuture.Function<Void, Void>() {
+            @Override
+            public Void apply(Void value) {
+                return null;
+            }
+        }).withTimeout(50, TimeUnit.MILLISECONDS);
+
+        try {
+            result.get(1, TimeUnit.SECONDS);
+            fail("Expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        try {
+            request.get(1, TimeUnit.SECONDS);
+            fail("Expected cancellation");
+        } catch (CancellationException e) {
+            assertTrue(request.isCancelled());
+        }
+    }
+}
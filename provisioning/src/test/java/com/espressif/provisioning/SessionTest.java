@@ -0,0 +1,248 @@
+package com.espressif.provisioning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.espressif.provisioning.listeners.ResponseBufferListener;
+import com.espressif.provisioning.listeners.ResponseListener;
+import com.espressif.provisioning.security.Security1;
+import com.espressif.provisioning.transport.Transport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class SessionTest {
+
+    private static final byte[] KEY = new byte[32];
+    private static final byte[] IV = new byte[16];
+
+    static {
+        new Random(1).nextBytes(KEY);
+        new Random(2).nextBytes(IV);
+    }
+
+    private final ExecutorService deviceThreads = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        deviceThreads.shutdownNow();
+    }
+
+    @Test
+    public void overlappingSecurity1RequestsKeepCipherStreamInSync() throws Exception {
+
+        Security1 security = new Security1("abcd1234");
+        setField(security, "cipher", newCtrCipher());
+        Session session = new Session(new EchoDevice(), security);
+        setField(session, "isSessionEstablished", true);
+
+        final int requestCount = 32;
+        final List<ESPFuture<byte[]>> futures = new ArrayList<>();
+        final CountDownLatch sent = new CountDownLatch(requestCount);
+        Thread[] senders = new Thread[requestCount];
+
+        for (int i = 0; i < requestCount; i++) {
+            futures.add(null);
+        }
+        for (int i = 0; i < requestCount; i++) {
+            final int index = i;
+            final Session s = session;
+            senders[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ESPFuture<byte[]> future = s.sendAsync("custom-data", ("request-" + index).getBytes(StandardCharsets.UTF_8));
+                    synchronized (futures) {
+                        futures.set(index, future);
+                    }
+                    sent.countDown();
+                }
+            });
+            senders[i].start();
+        }
+        sent.await(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < requestCount; i++) {
+            ESPFuture<byte[]> future;
+            synchronized (futures) {
+                future = futures.get(i);
+            }
+            assertEquals("response-request-" + i,
+                    new String(future.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void failureFollowedBySuccessStartsNextExchangeOnce() throws Exception {
+
+        Security1 security = new Security1("abcd1234");
+        setField(security, "cipher", newCtrCipher());
+        FailingDevice device = new FailingDevice();
+        Session session = new Session(device, security);
+        setField(session, "isSessionEstablished", true);
+
+        ESPFuture<byte[]> failed = session.sendAsync("custom-data", "request-0".getBytes(StandardCharsets.UTF_8));
+        ESPFuture<byte[]> first = session.sendAsync("custom-data", "request-1".getBytes(StandardCharsets.UTF_8));
+        ESPFuture<byte[]> second = session.sendAsync("custom-data", "request-2".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("First request should fail");
+        } catch (ExecutionException e) {
+            assertEquals("Connection Lost", e.getCause().getMessage());
+        }
+        assertEquals("response-request-1", new String(first.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertEquals("response-request-2", new String(second.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertEquals(1, device.maxRequestsInFlight);
+    }
+
+    @Test
+    public void responseIsDecryptedIntoBuffer() throws Exception {
+
+        Security1 security = new Security1("abcd1234");
+        setField(security, "cipher", newCtrCipher());
+        Session session = new Session(new EchoDevice(), security);
+        setField(session, "isSessionEstablished", true);
+
+        final List<String> responses = new ArrayList<>();
+        final CountDownLatch received = new CountDownLatch(2);
+        ResponseBufferListener listener = new ResponseBufferListener() {
+            @Override
+            public void onSuccess(ByteBuffer response) {
+                byte[] bytes = new byte[response.remaining()];
+                response.get(bytes);
+                synchronized (responses) {
+                    responses.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                received.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                received.countDown();
+            }
+        };
+        session.sendDataToDevice("custom-data", "request-0".getBytes(StandardCharsets.UTF_8), listener);
+        session.sendDataToDevice("custom-data", "request-1".getBytes(StandardCharsets.UTF_8), listener);
+
+        received.await(5, TimeUnit.SECONDS);
+        synchronized (responses) {
+            assertEquals(2, responses.size());
+            assertTrue(responses.contains("response-request-0"));
+            assertTrue(responses.contains("response-request-1"));
+        }
+    }
+
+    private static Cipher newCtrCipher() throws Exception {
+
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY, "AES"), new IvParameterSpec(IV));
+        return cipher;
+    }
+
+    private static void setField(Object object, String name, Object value) throws Exception {
+
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    /**
+     * Device side of Security 1 which reports the first request like SoftAPTransport reports a lost
+     * connection : onFailure followed by onSuccess with no data.
+     */
+    private class FailingDevice implements Transport {
+
+        private final Cipher cipher;
+        private int requestCount;
+        private int requestsInFlight;
+        private volatile int maxRequestsInFlight;
+
+        FailingDevice() throws Exception {
+            cipher = newCtrCipher();
+        }
+
+        @Override
+        public void sendConfigData(String path, byte[] data, final ResponseListener listener) {
+
+            final byte[] response;
+            final boolean isFailed;
+            synchronized (this) {
+                String request = new String(cipher.update(data), StandardCharsets.UTF_8);
+                isFailed = requestCount++ == 0;
+                response = isFailed ? null : cipher.update(("response-" + request).getBytes(StandardCharsets.UTF_8));
+                maxRequestsInFlight = Math.max(maxRequestsInFlight, ++requestsInFlight);
+            }
+            deviceThreads.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    synchronized (FailingDevice.this) {
+                        requestsInFlight--;
+                    }
+                    if (isFailed) {
+                        listener.onFailure(new RuntimeException("Connection Lost"));
+                    }
+                    listener.onSuccess(response);
+                }
+            });
+        }
+    }
+
+    /**
+     * Device side of Security 1 : one AES-CTR stream decrypts each request and encrypts its response,
+     * in the order in which requests arrive. Responses are delivered after a random delay.
+     */
+    private class EchoDevice implements Transport {
+
+        private final Cipher cipher;
+        private final Random random = new Random(3);
+
+        EchoDevice() throws Exception {
+            cipher = newCtrCipher();
+        }
+
+        @Override
+        public void sendConfigData(String path, byte[] data, final ResponseListener listener) {
+
+            final byte[] response;
+            final long delay;
+            synchronized (this) {
+                String request = new String(cipher.update(data), StandardCharsets.UTF_8);
+                response = cipher.update(("response-" + request).getBytes(StandardCharsets.UTF_8));
+                delay = random.nextInt(3);
+            }
+            deviceThreads.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    listener.onSuccess(response);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.espressif.provisioning.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class AesGcmSessionCipherTest {
+
+    private static final byte[] KEY = new byte[32];
+    private static final byte[] NONCE = new byte[12];
+
+    static {
+        for (int i = 0; i < KEY.length; i++) {
+            KEY[i] = (byte) i;
+        }
+        for (int i = 0; i < NONCE.length; i++) {
+            NONCE[i] = (byte) (0xA0 + i);
+        }
+    }
+
+    @Test
+    public void byteBufferAndArrayResultsMatch() throws Exception {
+
+        byte[] message = "{\"ssid\":\"weather-station\"}".getBytes();
+        AesGcmSessionCipher deviceCipher = new AesGcmSessionCipher(KEY, NONCE);
+        AesGcmSessionCipher phoneCipher = new AesGcmSessionCipher(KEY, NONCE);
+
+        ByteBuffer encrypted = ByteBuffer.allocate(message.length + AesGcmSessionCipher.TAG_LENGTH);
+        int length = phoneCipher.encrypt(ByteBuffer.wrap(message), encrypted);
+        assertEquals(message.length + AesGcmSessionCipher.TAG_LENGTH, length);
+        encrypted.flip();
+
+        byte[] cipherText = new byte[length];
+        encrypted.duplicate().get(cipherText);
+        assertArrayEquals(cipherText, deviceCipher.encrypt(message));
+
+        // Decrypt context is reused for consecutive messages.
+        assertArrayEquals(message, phoneCipher.decrypt(cipherText));
+        ByteBuffer decrypted = ByteBuffer.allocate(message.length);
+        assertEquals(message.length, phoneCipher.decrypt(encrypted, decrypted));
+        assertArrayEquals(message, decrypted.array());
+    }
+
+    @Test
+    public void decryptRecoversAfterTagMismatch() throws Exception {
+
+        byte[] message = new byte[]{1, 2, 3, 4};
+        byte[] cipherText = new AesGcmSessionCipher(KEY, NONCE).encrypt(message);
+        AesGcmSessionCipher cipher = new AesGcmSessionCipher(KEY, NONCE);
+
+        byte[] corrupted = cipherText.clone();
+        corrupted[0] ^= 1;
+        try {
+            cipher.decrypt(corrupted);
+        } catch (Exception expected) {
+        }
+        assertArrayEquals(message, cipher.decrypt(cipherText));
+    }
+}
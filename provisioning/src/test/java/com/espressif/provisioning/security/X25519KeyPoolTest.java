@@ -0,0 +1,45 @@
+package com.espressif.provisioning.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.crypto.tink.subtle.X25519;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class X25519KeyPoolTest {
+
+    @Test
+    public void keyPairsAreHandedOutOnce() throws Exception {
+
+        X25519KeyPool pool = new X25519KeyPool(2);
+        X25519KeyPool.KeyPair first = pool.take();
+        X25519KeyPool.KeyPair second = pool.take();
+
+        assertFalse(Arrays.equals(first.privateKey, second.privateKey));
+        assertArrayEquals(X25519.publicFromPrivate(second.privateKey), second.publicKey);
+    }
+
+    @Test
+    public void poolIsRefilledInBackground() throws Exception {
+
+        X25519KeyPool pool = new X25519KeyPool(2);
+        pool.warmUp();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.size());
+
+        pool.take();
+        deadline = System.currentTimeMillis() + 5000;
+        while (pool.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.size());
+    }
+}
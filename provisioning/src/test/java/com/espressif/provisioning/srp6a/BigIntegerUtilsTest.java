@@ -0,0 +1,51 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class BigIntegerUtilsTest {
+
+    private static final BigInteger[] VALUES = {
+            BigInteger.ZERO,
+            BigInteger.ONE,
+            BigInteger.valueOf(0x80),
+            BigInteger.valueOf(0x7f),
+            BigInteger.ONE.shiftLeft(3071),
+            SRP6CryptoParams.N_3072,
+            new BigInteger(3000, new Random(1)),
+    };
+
+    @Test
+    public void updateDigestMatchesBytes() throws Exception {
+
+        MessageDigest expected = MessageDigest.getInstance("SHA-512");
+        MessageDigest actual = MessageDigest.getInstance("SHA-512");
+
+        for (BigInteger value : VALUES) {
+            expected.update(BigIntegerUtils.bigIntegerToBytes(value));
+            BigIntegerUtils.updateDigest(actual, value);
+            assertArrayEquals(value.toString(16), expected.digest(), actual.digest());
+        }
+    }
+
+    @Test
+    public void updateDigestMatchesPaddedBytes() throws Exception {
+
+        SRP6Routines routines = new SRP6Routines();
+        MessageDigest expected = MessageDigest.getInstance("SHA-512");
+        MessageDigest actual = MessageDigest.getInstance("SHA-512");
+
+        for (BigInteger value : VALUES) {
+            for (int length : new int[]{1, 128, 129, 384}) {
+                expected.update(routines.getPadded(value, length));
+                BigIntegerUtils.updateDigest(actual, value, length);
+                assertArrayEquals(value.toString(16) + " " + length, expected.digest(), actual.digest());
+            }
+        }
+    }
+}
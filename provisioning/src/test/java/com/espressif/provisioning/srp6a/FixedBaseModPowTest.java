@@ -0,0 +1,76 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Random;
+
+public class FixedBaseModPowTest {
+
+    private static final BigInteger N = SRP6CryptoParams.N_3072;
+    private static final BigInteger g = SRP6CryptoParams.g_large;
+
+    @Before
+    public void setUp() {
+        FixedBaseModPow.precomputeGroup3072();
+    }
+
+    @Test
+    public void privateValuePowersMatchModPow() {
+
+        SRP6Routines routines = new SRP6Routines();
+        SecureRandom random = new SecureRandom();
+
+        for (int i = 0; i < 20; i++) {
+            BigInteger a = routines.generatePrivateValue(N, random);
+            assertEquals(g.modPow(a, N), FixedBaseModPow.modPow(g, a, N));
+        }
+    }
+
+    @Test
+    public void edgeExponentsMatchModPow() {
+
+        BigInteger[] exponents = {
+                BigInteger.ZERO,
+                BigInteger.ONE,
+                BigInteger.valueOf(2),
+                BigInteger.ONE.shiftLeft(511),
+                BigInteger.ONE.shiftLeft(512).subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(512),
+                N.subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(3072).subtract(BigInteger.ONE),
+        };
+
+        for (BigInteger e : exponents) {
+            assertEquals(e.toString(16), g.modPow(e, N), FixedBaseModPow.modPow(g, e, N));
+        }
+    }
+
+    @Test
+    public void passwordKeyPowersMatchModPow() {
+
+        Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            BigInteger x = new BigInteger(1 + random.nextInt(512), random);
+            assertEquals(g.modPow(x, N), FixedBaseModPow.modPow(g, x, N));
+        }
+    }
+
+    @Test
+    public void oddTableShapesMatchModPow() {
+
+        BigInteger modulus = SRP6CryptoParams.N_1024;
+        BigInteger base = BigInteger.valueOf(7);
+        FixedBaseModPow engine = new FixedBaseModPow(base, modulus, 1000, 5, 3);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50; i++) {
+            BigInteger e = new BigInteger(1 + random.nextInt(1000), random);
+            assertEquals(base.modPow(e, modulus), engine.pow(e));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class SRP6BatchVerifierGeneratorTest {
+
+    private final SRP6CryptoParams config = SRP6CryptoParams.getInstance(3072, "SHA-512");
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void batchMatchesSingleVerifiers() {
+
+        List<SRP6BatchVerifierGenerator.Credentials> batch = credentials(10);
+        List<SRP6BatchVerifierGenerator.Result> results = new SRP6BatchVerifierGenerator(config, pool).generate(batch);
+
+        SRP6VerifierGenerator generator = new SRP6VerifierGenerator(config);
+        generator.setXRoutine(new XRoutineWithUserIdentity());
+
+        assertEquals(batch.size(), results.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SRP6BatchVerifierGenerator.Result result = results.get(i);
+            assertEquals(batch.get(i).deviceID, result.deviceID);
+            assertEquals(16, result.salt.length);
+            assertFalse(result.salt[0] == 0);
+            assertEquals(generator.generateVerifier(BigIntegerUtils.bigIntegerFromBytes(result.salt), "wifiprov", batch.get(i).password),
+                    result.verifier);
+        }
+    }
+
+    @Test
+    public void streamingSkipsCompletedDevices() throws Exception {
+
+        int deviceCount = SRP6BatchVerifierGenerator.CHUNK_SIZE + 3;
+        final List<Integer> chunkSizes = new ArrayList<>();
+        final List<String> written = new ArrayList<>();
+
+        int count = new SRP6BatchVerifierGenerator(config, pool, 4).generate(credentials(deviceCount).iterator(),
+                Collections.singleton("device-1"),
+                new SRP6BatchVerifierGenerator.ResultWriter() {
+                    @Override
+                    public void write(List<SRP6BatchVerifierGenerator.Result> results) {
+                        chunkSizes.add(results.size());
+                        for (SRP6BatchVerifierGenerator.Result result : results) {
+                            written.add(result.deviceID);
+                        }
+                    }
+                });
+
+        assertEquals(deviceCount - 1, count);
+        assertEquals(deviceCount - 1, written.size());
+        assertEquals(2, chunkSizes.size());
+        assertEquals("device-0", written.get(0));
+        assertEquals("device-2", written.get(1));
+        assertFalse(written.contains("device-1"));
+    }
+
+    private static List<SRP6BatchVerifierGenerator.Credentials> credentials(int count) {
+
+        List<SRP6BatchVerifierGenerator.Credentials> credentials = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            credentials.add(new SRP6BatchVerifierGenerator.Credentials("device-" + i, "wifiprov", "pop-" + i));
+        }
+        return credentials;
+    }
+}
@@ -0,0 +1,123 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SRP6ClientSessionParallelTest {
+
+    private static final String USER_NAME = "wifiprov";
+    private static final String PASSWORD = "abcd1234";
+
+    private final SRP6CryptoParams config = SRP6CryptoParams.getInstance(3072, "SHA-512");
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void handshakeSucceedsWithComputeExecutor() throws Exception {
+
+        SRP6ClientSession client = new SRP6ClientSession();
+        client.setComputeExecutor(executor);
+        handshake(client);
+        assertEquals(SRP6ClientSession.State.STEP_3, client.getState());
+    }
+
+    @Test
+    public void handshakeSucceedsWithoutComputeExecutor() throws Exception {
+
+        SRP6ClientSession client = new SRP6ClientSession();
+        handshake(client);
+        assertEquals(SRP6ClientSession.State.STEP_3, client.getState());
+    }
+
+    @Test
+    public void handshakeSucceedsWhenComputeExecutorIsShutDown() throws Exception {
+
+        executor.shutdownNow();
+        SRP6ClientSession client = new SRP6ClientSession();
+        client.setComputeExecutor(executor);
+        handshake(client);
+        assertEquals(SRP6ClientSession.State.STEP_3, client.getState());
+    }
+
+    @Test
+    public void handshakeSucceedsWhenDefaultComputeExecutorIsBusy() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService computeExecutor = SRP6ClientSession.getDefaultComputeExecutor();
+        try {
+            for (int i = 0; i < SRP6ClientSession.COMPUTE_THREADS; i++) {
+                computeExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        release.await();
+                        return null;
+                    }
+                });
+            }
+            SRP6ClientSession client = new SRP6ClientSession();
+            client.setComputeExecutor(computeExecutor);
+            handshake(client);
+            assertEquals(SRP6ClientSession.State.STEP_3, client.getState());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void defaultComputeExecutorIsSeparateFromDefaultExecutor() {
+
+        assertNotSame(SRP6ClientSession.getDefaultExecutor(), SRP6ClientSession.getDefaultComputeExecutor());
+    }
+
+    /**
+     * Runs the handshake with SRP6ServerSession acting as device, which computes evidence
+     * messages with shared session key K = H(S).
+     */
+    private void handshake(SRP6ClientSession client) throws SRP6Exception {
+
+        SRP6VerifierGenerator generator = new SRP6VerifierGenerator(config);
+        generator.setXRoutine(new XRoutineWithUserIdentity());
+        byte[] salt = generator.generateRandomSalt(16);
+        BigInteger s = BigIntegerUtils.bigIntegerFromBytes(salt);
+        BigInteger v = generator.generateVerifier(s, USER_NAME, PASSWORD);
+
+        client.step1(USER_NAME, PASSWORD);
+        client.getClientPublicKey(config);
+
+        SRP6ServerSession server = new SRP6ServerSession(config);
+        server.setClientEvidenceRoutine(new ClientSRP6Routines(config.getMessageDigestInstance()));
+        server.setServerEvidenceRoutine(new ServerEvidenceRoutine() {
+            @Override
+            public BigInteger computeServerEvidence(SRP6CryptoParams cryptoParams, SRP6ServerEvidenceContext ctx) {
+                SRP6Routines routines = new SRP6Routines();
+                MessageDigest digest = cryptoParams.getMessageDigestInstance();
+                BigInteger K = routines.computeSharedSessionKey(digest, ctx.S);
+                return routines.computeServerEvidence(digest, ctx.A, ctx.M1, K);
+            }
+        });
+        BigInteger B = server.step1(USER_NAME, s, v);
+
+        SRP6ClientCredentials credentials = client.step2_for_client_evidence(config, s, B, salt);
+        client.step3(server.step2(credentials.A, credentials.M1));
+    }
+}
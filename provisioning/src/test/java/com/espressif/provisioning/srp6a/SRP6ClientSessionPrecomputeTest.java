@@ -0,0 +1,118 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class SRP6ClientSessionPrecomputeTest {
+
+    private static final SRP6CryptoParams CONFIG = SRP6CryptoParams.getInstance(3072, "SHA-512");
+
+    @Test
+    public void precomputedPublicValueIsUsed() throws Exception {
+
+        RecordingExecutor executor = new RecordingExecutor();
+        SRP6ClientSession session = new SRP6ClientSession();
+        session.precomputeClientValues(CONFIG, executor);
+        session.step1("wifiprov", "abcd1234");
+
+        BigInteger precomputedA = ((BigInteger[]) executor.lastTask.get())[1];
+        assertEquals(precomputedA, session.getClientPublicKey(CONFIG));
+    }
+
+    @Test
+    public void precomputedValuesForOtherGroupAreIgnored() throws Exception {
+
+        RecordingExecutor executor = new RecordingExecutor();
+        SRP6ClientSession session = new SRP6ClientSession();
+        session.precomputeClientValues(SRP6CryptoParams.getInstance(2048, "SHA-512"), executor);
+        session.step1("wifiprov", "abcd1234");
+
+        BigInteger precomputedA = ((BigInteger[]) executor.lastTask.get())[1];
+        BigInteger A = session.getClientPublicKey(CONFIG);
+        assertFalse(precomputedA.equals(A));
+        assertEquals(-1, A.compareTo(CONFIG.N));
+    }
+
+    @Test
+    public void valuesAreComputedInlineWhenExecutorIsBusy() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    release.await();
+                    return null;
+                }
+            });
+            SRP6ClientSession session = new SRP6ClientSession();
+            session.precomputeClientValues(CONFIG, executor);
+            session.step1("wifiprov", "abcd1234");
+
+            BigInteger A = session.getClientPublicKey(CONFIG);
+            assertEquals(-1, A.compareTo(CONFIG.N));
+            assertEquals(1, release.getCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs tasks on the calling thread and keeps the last one.
+     */
+    private static final class RecordingExecutor extends AbstractExecutorService {
+
+        private RunnableFuture<?> lastTask;
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            RunnableFuture<T> task = super.newTaskFor(callable);
+            lastTask = task;
+            return task;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.espressif.provisioning.srp6a;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SRP6CryptoParamsTest {
+
+    @Test
+    public void precomputedParamsAreShared() {
+
+        SRP6CryptoParams params = SRP6CryptoParams.getInstance(3072, "SHA-512");
+
+        assertSame(params, SRP6CryptoParams.getInstance(3072, "SHA-512"));
+        assertNotSame(params, SRP6CryptoParams.getInstance(3072, "SHA-256"));
+    }
+
+    @Test
+    public void derivedValuesMatchRoutines() throws Exception {
+
+        SRP6CryptoParams params = SRP6CryptoParams.getInstance(3072, "SHA-512");
+        BigInteger k = new SRP6Routines().computeK(MessageDigest.getInstance("SHA-512"), params.N, params.g);
+
+        assertEquals(k, params.getK());
+        assertEquals(384, params.getPadLength());
+        assertEquals(384, params.getPaddedG().length);
+        assertEquals(params.g, BigIntegerUtils.bigIntegerFromBytes(params.getPaddedG()));
+        assertArrayEquals(BigIntegerUtils.bigIntegerToBytes(params.N), params.getPaddedN());
+    }
+
+    @Test
+    public void messageDigestIsReusedPerThread() throws Exception {
+
+        final SRP6CryptoParams params = SRP6CryptoParams.getInstance(3072, "SHA-512");
+
+        MessageDigest digest = params.getThreadMessageDigest();
+        digest.update((byte) 1);
+        assertSame(digest, params.getThreadMessageDigest());
+        assertArrayEquals(MessageDigest.getInstance("SHA-512").digest(), digest.digest());
+
+        final AtomicReference<MessageDigest> otherThreadDigest = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                otherThreadDigest.set(params.getThreadMessageDigest());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(digest, otherThreadDigest.get());
+    }
+
+    @Test
+    public void messageDigestInstanceIsNew() {
+
+        SRP6CryptoParams params = SRP6CryptoParams.getInstance(3072, "SHA-512");
+
+        MessageDigest digest = params.getMessageDigestInstance();
+        assertNotSame(digest, params.getMessageDigestInstance());
+        assertNotSame(params.getThreadMessageDigest(), params.getMessageDigestInstance());
+    }
+}
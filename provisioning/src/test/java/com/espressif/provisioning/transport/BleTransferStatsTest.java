@@ -0,0 +1,58 @@
+package com.espressif.provisioning.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import com.espressif.provisioning.ESPConstants;
+
+import org.junit.Test;
+
+public class BleTransferStatsTest {
+
+    @Test
+    public void writeFittingIntoOnePduNeedsOneRequest() {
+        assertEquals(1, BleTransferStats.getWritePduCount(23, 20));
+        assertEquals(1, BleTransferStats.getWritePduCount(517, 514));
+    }
+
+    @Test
+    public void longWriteIsSplitIntoPreparedWrites() {
+        // Security2 client public key : 384 bytes, 18 bytes per Prepare Write Request at default MTU
+        assertEquals(22 + 1, BleTransferStats.getWritePduCount(23, 384));
+        assertEquals(2 + 1, BleTransferStats.getWritePduCount(247, 384));
+    }
+
+    @Test
+    public void longReadUsesReadBlobRequests() {
+        assertEquals(1, BleTransferStats.getReadPduCount(23, 21));
+        assertEquals(2, BleTransferStats.getReadPduCount(23, 22));
+        assertEquals(18, BleTransferStats.getReadPduCount(23, 384));
+        assertEquals(1, BleTransferStats.getReadPduCount(517, 384));
+    }
+
+    @Test
+    public void averagesAreComputedPerOperation() {
+
+        BleTransferStats stats = new BleTransferStats();
+        stats.setMtu(517);
+        stats.recordWrite(100);
+        stats.recordRead(300);
+
+        assertEquals(2, stats.getGattOperationCount());
+        assertEquals(2, stats.getAttPduCount());
+        assertEquals(200, stats.getAverageBytesPerGattOperation());
+    }
+
+    @Test
+    public void throughputIsReportedPerLinkProfile() {
+
+        BleTransferStats stats = new BleTransferStats();
+        stats.recordExchange(ESPConstants.BleLinkProfile.HANDSHAKE_FAST, 500, 50);
+        stats.recordExchange(ESPConstants.BleLinkProfile.HANDSHAKE_FAST, 500, 50);
+        stats.recordExchange(ESPConstants.BleLinkProfile.IDLE_LOW_POWER, 100, 200);
+
+        assertEquals(2, stats.getExchangeCount(ESPConstants.BleLinkProfile.HANDSHAKE_FAST));
+        assertEquals(10000, stats.getThroughput(ESPConstants.BleLinkProfile.HANDSHAKE_FAST));
+        assertEquals(500, stats.getThroughput(ESPConstants.BleLinkProfile.IDLE_LOW_POWER));
+        assertEquals(0, stats.getThroughput(ESPConstants.BleLinkProfile.BALANCED));
+    }
+}
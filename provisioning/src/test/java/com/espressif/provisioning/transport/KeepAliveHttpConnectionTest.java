@@ -0,0 +1,155 @@
+package com.espressif.provisioning.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.SocketFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the retry of KeepAliveHttpConnection against a loopback HTTP server which stands in for the device.
+ */
+public class KeepAliveHttpConnectionTest {
+
+    private ServerSocket serverSocket;
+    private KeepAliveHttpConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        connection = new KeepAliveHttpConnection("127.0.0.1:" + serverSocket.getLocalPort(),
+                SocketFactory.getDefault());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void requestOnIdleClosedConnectionIsRetried() throws Exception {
+
+        final AtomicInteger requestCount = new AtomicInteger();
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // The first connection is closed by the device after one response.
+                    try (Socket socket = serverSocket.accept()) {
+                        writeResponse(socket.getOutputStream(), readRequestBody(socket.getInputStream()));
+                        requestCount.incrementAndGet();
+                    }
+                    try (Socket socket = serverSocket.accept()) {
+                        writeResponse(socket.getOutputStream(), readRequestBody(socket.getInputStream()));
+                        requestCount.incrementAndGet();
+                        Thread.sleep(200);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        server.start();
+
+        assertArrayEquals(bytes("first"), connection.post("prov-session", bytes("first"), null).body);
+        Thread.sleep(100);
+        assertArrayEquals(bytes("second"), connection.post("prov-session", bytes("second"), null).body);
+        server.join(2000);
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void readTimeoutIsNotRetried() throws Exception {
+
+        final AtomicInteger connectionCount = new AtomicInteger();
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    connectionCount.incrementAndGet();
+                    InputStream in = socket.getInputStream();
+                    writeResponse(socket.getOutputStream(), readRequestBody(in));
+                    // The second request is received but never answered.
+                    readRequestBody(in);
+                    Thread.sleep(7000);
+                } catch (Exception e) {
+                    // Connection closed by the test.
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        connection.post("prov-session", bytes("first"), null);
+        try {
+            connection.post("prov-session", bytes("second"), null);
+            fail("Expected read timeout");
+        } catch (SocketTimeoutException e) {
+            // Expected, the device may have processed the request.
+        }
+        assertEquals(1, connectionCount.get());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readRequestBody(InputStream in) throws IOException {
+
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            head.write(c);
+            matched = (c == '\r' || c == '\n') ? matched + 1 : 0;
+        }
+
+        int contentLength = 0;
+        for (String line : head.toString("ISO-8859-1").split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+
+        byte[] body = new byte[contentLength];
+        int offset = 0;
+        while (offset < contentLength) {
+            int n = in.read(body, offset, contentLength - offset);
+            if (n < 0) {
+                throw new IOException("Connection closed");
+            }
+            offset += n;
+        }
+        return body;
+    }
+
+    private static void writeResponse(OutputStream out, byte[] body) throws IOException {
+
+        String head = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "\r\n";
+        out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+    }
+}
@@ -0,0 +1,178 @@
+package com.espressif.provisioning.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.espressif.provisioning.ESPConstants;
+import com.espressif.provisioning.ESPFuture;
+import com.espressif.provisioning.Session;
+import com.espressif.provisioning.listeners.ResponseListener;
+import com.espressif.provisioning.security.Security1;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class MultiplexTransportTest {
+
+    @Test
+    public void requestsAreSerializedWithoutMultiplexing() {
+
+        FakeTransport device = new FakeTransport();
+        MultiplexTransport transport = new MultiplexTransport(device, false);
+        List<String> responses = new ArrayList<>();
+
+        transport.sendConfigData(ESPConstants.HANDLER_PROV_CONFIG, new byte[]{1}, new Collector(responses));
+        transport.sendConfigData("config", new byte[]{2}, new Collector(responses));
+        assertEquals(1, device.data.size());
+        assertArrayEquals(new byte[]{1}, device.data.get(0));
+
+        device.listeners.get(0).onSuccess("first".getBytes());
+        assertEquals(2, device.data.size());
+        assertArrayEquals(new byte[]{2}, device.data.get(1));
+
+        device.listeners.get(1).onSuccess("second".getBytes());
+        assertEquals("[first, second]", responses.toString());
+    }
+
+    @Test
+    public void responsesAreRoutedByMessageId() {
+
+        FakeTransport device = new FakeTransport();
+        MultiplexTransport transport = new MultiplexTransport(device, true);
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+
+        transport.sendConfigData(ESPConstants.HANDLER_PROV_CONFIG, new byte[]{1}, new Collector(first));
+        transport.sendConfigData("config", new byte[]{2}, new Collector(second));
+        assertEquals(2, device.data.size());
+        assertArrayEquals(new byte[]{0, 1, 1}, device.data.get(0));
+        assertArrayEquals(new byte[]{0, 2, 2}, device.data.get(1));
+
+        // Device answers the second request first, on the channel of the first one.
+        device.listeners.get(0).onSuccess(MultiplexTransport.frame(2, "config".getBytes()));
+        device.listeners.get(1).onSuccess(MultiplexTransport.frame(1, "status".getBytes()));
+
+        assertEquals("[status]", first.toString());
+        assertEquals("[config]", second.toString());
+    }
+
+    @Test
+    public void sessionRequestsAreNotFramed() {
+
+        FakeTransport device = new FakeTransport();
+        MultiplexTransport transport = new MultiplexTransport(device, true);
+
+        transport.sendConfigData(ESPConstants.HANDLER_PROV_SESSION, new byte[]{7}, null);
+        assertArrayEquals(new byte[]{7}, device.data.get(0));
+    }
+
+    @Test
+    public void unknownMessageIdFailsOutstandingRequests() {
+
+        FakeTransport device = new FakeTransport();
+        MultiplexTransport transport = new MultiplexTransport(device, true, 2);
+        List<String> responses = new ArrayList<>();
+
+        transport.sendConfigData("config", new byte[]{1}, new Collector(responses));
+        transport.sendConfigData("config", new byte[]{2}, new Collector(responses));
+        transport.sendConfigData("config", new byte[]{3}, new Collector(responses));
+        assertEquals(2, device.data.size());
+
+        device.listeners.get(0).onSuccess(MultiplexTransport.frame(9, "lost".getBytes()));
+        assertEquals("[failure : IOException, failure : IOException]", responses.toString());
+
+        // Outstanding requests are released, so the waiting request is sent.
+        assertEquals(3, device.data.size());
+        assertArrayEquals(new byte[]{0, 3, 3}, device.data.get(2));
+
+        // Late response of a failed request is ignored.
+        device.listeners.get(1).onSuccess(MultiplexTransport.frame(2, "late".getBytes()));
+        device.listeners.get(2).onSuccess(MultiplexTransport.frame(3, "third".getBytes()));
+        assertEquals("[failure : IOException, failure : IOException, third]", responses.toString());
+    }
+
+    @Test
+    public void security1RequestsAreExchangedOneAtATime() throws Exception {
+
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        key[0] = 1;
+        iv[0] = 2;
+        Cipher deviceCipher = newCtrCipher(key, iv);
+
+        Security1 security = new Security1("abcd1234");
+        setField(security, "cipher", newCtrCipher(key, iv));
+        FakeTransport device = new FakeTransport();
+        Session session = new Session(new MultiplexTransport(device, false), security);
+        setField(session, "isSessionEstablished", true);
+
+        ESPFuture<byte[]> first = session.sendAsync("custom-data", "first".getBytes(StandardCharsets.UTF_8));
+        ESPFuture<byte[]> second = session.sendAsync("custom-data", "second".getBytes(StandardCharsets.UTF_8));
+
+        // Second request is encrypted only after the response of the first one is decrypted.
+        assertEquals(1, device.data.size());
+        assertEquals("first", new String(deviceCipher.update(device.data.get(0)), StandardCharsets.UTF_8));
+        device.listeners.get(0).onSuccess(deviceCipher.update("response-1".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, device.data.size());
+        assertEquals("second", new String(deviceCipher.update(device.data.get(1)), StandardCharsets.UTF_8));
+        device.listeners.get(1).onSuccess(deviceCipher.update("response-2".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("response-1", new String(first.get(1, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertEquals("response-2", new String(second.get(1, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+    }
+
+    private static Cipher newCtrCipher(byte[] key, byte[] iv) throws Exception {
+
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    private static void setField(Object object, String name, Object value) throws Exception {
+
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    private static class FakeTransport implements Transport {
+
+        final List<byte[]> data = new ArrayList<>();
+        final List<ResponseListener> listeners = new ArrayList<>();
+
+        @Override
+        public void sendConfigData(String path, byte[] data, ResponseListener listener) {
+            this.data.add(data);
+            listeners.add(listener);
+        }
+    }
+
+    private static class Collector implements ResponseListener {
+
+        private final List<String> responses;
+
+        Collector(List<String> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public void onSuccess(byte[] returnData) {
+            responses.add(new String(returnData));
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            responses.add("failure : " + e.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.espressif.provisioning.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation counts of the SoftAP response path.
+ * Compares bytes allocated per response by the previous chunk copy path
+ * (4 KB chunk, ByteArrayOutputStream, toByteArray) with ResponseReader.
+ * Needs per-thread allocation counters of the JVM, the test is skipped if they are not available.
+ */
+public class ResponseReaderAllocationTest {
+
+    private static final int ITERATIONS = 2000;
+    private static final int RESPONSE_SIZE = 1200;
+    private static final int CHUNK_SIZE = 4096;
+
+    // Bytes allowed per response besides the response array, for the input stream and array headers.
+    private static final int OVERHEAD = 256;
+
+    @Test
+    public void responseReaderAllocatesOnlyResponseArray() throws Exception {
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Method allocatedBytes = getAllocatedBytesMethod(threadMXBean);
+        assumeTrue("Thread allocation counters are not supported", allocatedBytes != null);
+
+        byte[] response = new byte[RESPONSE_SIZE];
+        new Random(1).nextBytes(response);
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up both paths so that class loading and pooled buffer allocation are not counted.
+        for (int i = 0; i < ITERATIONS; i++) {
+            readWithChunkCopy(new ByteArrayInputStream(response));
+            ResponseReader.readBody(new ByteArrayInputStream(response), RESPONSE_SIZE);
+            ResponseReader.readBody(new ByteArrayInputStream(response), -1);
+        }
+
+        long start = (Long) allocatedBytes.invoke(threadMXBean, threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            readWithChunkCopy(new ByteArrayInputStream(response));
+        }
+        long chunkCopyBytes = ((Long) allocatedBytes.invoke(threadMXBean, threadId) - start) / ITERATIONS;
+
+        start = (Long) allocatedBytes.invoke(threadMXBean, threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            ResponseReader.readBody(new ByteArrayInputStream(response), RESPONSE_SIZE);
+        }
+        long knownLengthBytes = ((Long) allocatedBytes.invoke(threadMXBean, threadId) - start) / ITERATIONS;
+
+        start = (Long) allocatedBytes.invoke(threadMXBean, threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            ResponseReader.readBody(new ByteArrayInputStream(response), -1);
+        }
+        long unknownLengthBytes = ((Long) allocatedBytes.invoke(threadMXBean, threadId) - start) / ITERATIONS;
+
+        assertArrayEquals(response, ResponseReader.readBody(new ByteArrayInputStream(response), RESPONSE_SIZE));
+        assertArrayEquals(response, ResponseReader.readBody(new ByteArrayInputStream(response), -1));
+        assertTrue("Chunk copy allocated " + chunkCopyBytes + " bytes per response",
+                chunkCopyBytes >= CHUNK_SIZE + RESPONSE_SIZE);
+        assertTrue("Content-Length path allocated " + knownLengthBytes + " bytes per response",
+                knownLengthBytes <= RESPONSE_SIZE + OVERHEAD);
+        assertTrue("Unknown length path allocated " + unknownLengthBytes + " bytes per response",
+                unknownLengthBytes <= RESPONSE_SIZE + OVERHEAD);
+    }
+
+    /**
+     * Get getThreadAllocatedBytes(long) of the HotSpot extension of ThreadMXBean, which is not available
+     * on every JVM, or null if it is not supported.
+     */
+    private static Method getAllocatedBytesMethod(ThreadMXBean threadMXBean) {
+
+        try {
+            Class<?> extendedType = Class.forName("com.sun.management.ThreadMXBean");
+            if (!extendedType.isInstance(threadMXBean)) {
+                return null;
+            }
+            Method isSupported = extendedType.getMethod("isThreadAllocatedMemorySupported");
+            Method isEnabled = extendedType.getMethod("isThreadAllocatedMemoryEnabled");
+            if (!(Boolean) isSupported.invoke(threadMXBean) || !(Boolean) isEnabled.invoke(threadMXBean)) {
+                return null;
+            }
+            return extendedType.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] readWithChunkCopy(InputStream is) throws IOException {
+
+        int n;
+        byte[] byteChunk = new byte[CHUNK_SIZE];
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        while ((n = is.read(byteChunk)) > 0) {
+            outputStream.write(byteChunk, 0, n);
+        }
+        return outputStream.toByteArray();
+    }
+}
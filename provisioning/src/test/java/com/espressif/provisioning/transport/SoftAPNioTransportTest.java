@@ -0,0 +1,393 @@
+package com.espressif.provisioning.transport;
+
+import com.espressif.provisioning.listeners.ResponseListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests SoftAPNioTransport against a loopback HTTP server which stands in for the device.
+ */
+public class SoftAPNioTransportTest {
+
+    private ServerSocket serverSocket;
+    private SoftAPNioTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            transport.close();
+        }
+        serverSocket.close();
+    }
+
+    @Test
+    public void pipelinedResponsesAreMatchedInOrder() throws Exception {
+
+        final int requestCount = 4;
+        final List<Integer> connectionCounts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    InputStream in = socket.getInputStream();
+                    List<byte[]> bodies = new ArrayList<>();
+                    // Answer only after all requests are received, which is possible only with pipelining.
+                    for (int i = 0; i < requestCount; i++) {
+                        bodies.add(readRequestBody(in));
+                    }
+                    connectionCounts.add(1);
+                    OutputStream out = socket.getOutputStream();
+                    for (byte[] body : bodies) {
+                        writeResponse(out, body, false);
+                    }
+                    out.flush();
+                    Thread.sleep(200);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        server.start();
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), requestCount);
+        final CountDownLatch latch = new CountDownLatch(requestCount);
+        final byte[][] responses = new byte[requestCount][];
+
+        for (int i = 0; i < requestCount; i++) {
+            final int index = i;
+            transport.sendConfigData("prov-scan", ("page-" + i).getBytes(StandardCharsets.UTF_8), new ResponseListener() {
+                @Override
+                public void onSuccess(byte[] returnData) {
+                    responses[index] = returnData;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < requestCount; i++) {
+            assertArrayEquals(("page-" + i).getBytes(StandardCharsets.UTF_8), responses[i]);
+        }
+        assertEquals(1, connectionCounts.size());
+        server.join(2000);
+    }
+
+    @Test
+    public void requestsAfterConnectionCloseAreSentAgain() throws Exception {
+
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // First connection answers only the first of the pipelined requests and closes the connection.
+                    try (Socket socket = serverSocket.accept()) {
+                        InputStream in = socket.getInputStream();
+                        byte[] body = readRequestBody(in);
+                        readRequestBody(in);
+                        readRequestBody(in);
+                        writeResponse(socket.getOutputStream(), body, true);
+                    }
+                    try (Socket socket = serverSocket.accept()) {
+                        InputStream in = socket.getInputStream();
+                        OutputStream out = socket.getOutputStream();
+                        writeResponse(out, readRequestBody(in), false);
+                        writeResponse(out, readRequestBody(in), false);
+                        Thread.sleep(200);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        server.start();
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), 3);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+
+        for (int i = 0; i < 3; i++) {
+            transport.sendConfigData("prov-session", ("msg-" + i).getBytes(StandardCharsets.UTF_8), new ResponseListener() {
+                @Override
+                public void onSuccess(byte[] returnData) {
+                    responses.add(new String(returnData, StandardCharsets.UTF_8));
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    responses.add("failed");
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        List<String> expected = new ArrayList<>();
+        expected.add("msg-0");
+        expected.add("msg-1");
+        expected.add("msg-2");
+        assertEquals(expected, responses);
+        server.join(2000);
+    }
+
+    @Test
+    public void resentRequestsCarryCookieOfEarlierResponse() throws Exception {
+
+        final List<String> cookieHeaders = Collections.synchronizedList(new ArrayList<String>());
+
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // First connection sets the session cookie and closes the connection
+                    // while the second request is already pipelined.
+                    try (Socket socket = serverSocket.accept()) {
+                        InputStream in = socket.getInputStream();
+                        readRequestHead(in);
+                        readRequestHead(in);
+                        String head = "HTTP/1.1 200 OK\r\n"
+                                + "Set-Cookie: session=42\r\n"
+                                + "Content-Length: 0\r\n"
+                                + "Connection: close\r\n"
+                                + "\r\n";
+                        socket.getOutputStream().write(head.getBytes(StandardCharsets.ISO_8859_1));
+                        socket.getOutputStream().flush();
+                    }
+                    try (Socket socket = serverSocket.accept()) {
+                        cookieHeaders.add(readRequestHead(socket.getInputStream()));
+                        writeResponse(socket.getOutputStream(), new byte[0], false);
+                        Thread.sleep(200);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        server.start();
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), 2);
+        final CountDownLatch latch = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            transport.sendConfigData("prov-session", new byte[0], new ResponseListener() {
+                @Override
+                public void onSuccess(byte[] returnData) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, cookieHeaders.size());
+        assertTrue(cookieHeaders.get(0).contains("Cookie: session=42\r\n"));
+        server.join(2000);
+    }
+
+    @Test
+    public void requestClosedWithoutResponseIsFailed() throws Exception {
+
+        final AtomicInteger connectionCount = new AtomicInteger();
+        Thread server = startClosingServer(connectionCount, 0);
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), 2);
+        RecordingListener listener = new RecordingListener();
+        transport.sendConfigData("prov-session", "msg-0".getBytes(StandardCharsets.UTF_8), listener);
+
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("Error ! Connection Lost", listener.failure.getMessage());
+        server.join(2000);
+        assertEquals(1, connectionCount.get());
+    }
+
+    @Test
+    public void requestOnReusedConnectionIsSentAgainOnlyOnce() throws Exception {
+
+        final AtomicInteger connectionCount = new AtomicInteger();
+        Thread server = startClosingServer(connectionCount, 1);
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), 2);
+        RecordingListener first = new RecordingListener();
+        transport.sendConfigData("prov-session", "msg-0".getBytes(StandardCharsets.UTF_8), first);
+        assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals("msg-0".getBytes(StandardCharsets.UTF_8), first.response);
+
+        RecordingListener second = new RecordingListener();
+        transport.sendConfigData("prov-session", "msg-1".getBytes(StandardCharsets.UTF_8), second);
+
+        assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("Error ! Connection Lost", second.failure.getMessage());
+        server.join(2000);
+        assertEquals(2, connectionCount.get());
+    }
+
+    /**
+     * Start a server which answers the given number of requests on the first connection and then, like ESP httpd
+     * when a handler fails, reads each request and closes the connection without response.
+     * Server stops once no connection is opened for 500 ms.
+     */
+    private Thread startClosingServer(final AtomicInteger connectionCount, final int answeredRequests) throws IOException {
+
+        serverSocket.setSoTimeout(500);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int answered = 0;
+                    while (true) {
+                        try (Socket socket = serverSocket.accept()) {
+                            connectionCount.incrementAndGet();
+                            InputStream in = socket.getInputStream();
+                            while (answered < answeredRequests) {
+                                writeResponse(socket.getOutputStream(), readRequestBody(in), false);
+                                answered++;
+                            }
+                            readRequestBody(in);
+                        }
+                    }
+                } catch (SocketTimeoutException e) {
+                    // No more connections.
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void requestsAfterCloseAreFailed() throws Exception {
+
+        transport = new SoftAPNioTransport("127.0.0.1:" + serverSocket.getLocalPort(), 2);
+        transport.close();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        transport.sendConfigData("prov-session", new byte[0], new ResponseListener() {
+            @Override
+            public void onSuccess(byte[] returnData) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    private static class RecordingListener implements ResponseListener {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile byte[] response;
+        volatile Exception failure;
+
+        @Override
+        public void onSuccess(byte[] returnData) {
+            response = returnData;
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            failure = e;
+            latch.countDown();
+        }
+    }
+
+    private static String readRequestHead(InputStream in) throws IOException {
+
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            head.write(c);
+            matched = (c == '\r' || c == '\n') ? matched + 1 : 0;
+        }
+        // Requests of these tests have an empty body.
+        return head.toString("ISO-8859-1");
+    }
+
+    private static byte[] readRequestBody(InputStream in) throws IOException {
+
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            head.write(c);
+            matched = (c == '\r' || c == '\n') ? matched + 1 : 0;
+        }
+
+        int contentLength = 0;
+        for (String line : head.toString("ISO-8859-1").split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+
+        byte[] body = new byte[contentLength];
+        int offset = 0;
+        while (offset < contentLength) {
+            int n = in.read(body, offset, contentLength - offset);
+            if (n < 0) {
+                throw new IOException("Connection closed");
+            }
+            offset += n;
+        }
+        return body;
+    }
+
+    private static void writeResponse(OutputStream out, byte[] body, boolean closeConnection) throws IOException {
+
+        String head = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + (closeConnection ? "Connection: close\r\n" : "")
+                + "\r\n";
+        out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+    }
+}
@@ -0,0 +1,70 @@
+package com.espressif.provisioning.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SoftAPSessionStoreTest {
+
+    @Test
+    public void cookiesAreKeptPerStore() {
+
+        // Devices on different networks are all reachable at the same base URL.
+        SoftAPSessionStore first = new SoftAPSessionStore("192.168.4.1:80");
+        SoftAPSessionStore second = new SoftAPSessionStore("192.168.4.1:80");
+
+        first.storeCookies(Collections.singletonList("session=1; Path=/"));
+
+        assertEquals("session=1", first.getCookieHeader("prov-session"));
+        assertNull(second.getCookieHeader("prov-session"));
+
+        second.storeCookies(Collections.singletonList("session=2"));
+        first.clear();
+        assertNull(first.getCookieHeader("prov-session"));
+        assertEquals("session=2", second.getCookieHeader("prov-session"));
+    }
+
+    @Test
+    public void cookieWithSameNameIsReplaced() {
+
+        SoftAPSessionStore store = new SoftAPSessionStore("192.168.4.1:80");
+
+        store.storeCookies(Arrays.asList("session=1", "lang=en"));
+        store.storeCookies(Collections.singletonList("session=2"));
+        assertEquals("session=2;lang=en", store.getCookieHeader("prov-session"));
+
+        store.clear();
+        assertNull(store.getCookieHeader("prov-session"));
+    }
+
+    @Test
+    public void cookieIsSentOnlyForItsPath() {
+
+        SoftAPSessionStore store = new SoftAPSessionStore("192.168.4.1:80");
+
+        store.storeCookies(Arrays.asList("session=1", "scan=2; Path=/prov-scan"));
+        assertEquals("session=1;scan=2", store.getCookieHeader("prov-scan"));
+        assertEquals("session=1", store.getCookieHeader("prov-config"));
+    }
+
+    @Test
+    public void expiredCookieIsNotSent() throws InterruptedException {
+
+        SoftAPSessionStore store = new SoftAPSessionStore("192.168.4.1:80");
+
+        store.storeCookies(Arrays.asList("session=1", "short=2; Max-Age=1"));
+        assertEquals("session=1;short=2", store.getCookieHeader("prov-session"));
+
+        // HttpCookie counts whole seconds, cookie has expired once more than one second has passed.
+        Thread.sleep(2100);
+        assertEquals("session=1", store.getCookieHeader("prov-session"));
+
+        // Cookie with a past expiry deletes the stored one.
+        store.storeCookies(Collections.singletonList("session=deleted; Max-Age=0"));
+        assertNull(store.getCookieHeader("prov-session"));
+    }
+}
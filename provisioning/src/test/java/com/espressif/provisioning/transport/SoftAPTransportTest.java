@@ -0,0 +1,33 @@
+package com.espressif.provisioning.transport;
+
+import com.espressif.provisioning.listeners.ResponseListener;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class SoftAPTransportTest {
+
+    @Test
+    public void requestsAfterCloseAreFailed() throws InterruptedException {
+
+        SoftAPTransport transport = new SoftAPTransport(null, "127.0.0.1:1", true);
+        transport.close();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        transport.sendConfigData("prov-session", new byte[0], new ResponseListener() {
+            @Override
+            public void onSuccess(byte[] returnData) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,184 @@
+package com.espressif.provisioning.tools;
+
+import com.espressif.provisioning.srp6a.SRP6BatchVerifierGenerator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * CSV input and output of the verifier tool.
+ * Input lines are "device_id,pop", output lines are "device_id,salt,verifier" with hex encoded values.
+ */
+final class VerifierCsv implements SRP6BatchVerifierGenerator.ResultWriter {
+
+    static final String HEADER = "device_id,salt,verifier";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private final int verifierLength;
+
+    private VerifierCsv(Writer writer, int verifierLength) {
+        this.writer = writer;
+        this.verifierLength = verifierLength;
+    }
+
+    /**
+     * Read device credentials of input file.
+     */
+    static List<SRP6BatchVerifierGenerator.Credentials> readInput(File file, String userName) throws IOException {
+
+        List<SRP6BatchVerifierGenerator.Credentials> devices = new ArrayList<>();
+        Set<String> deviceIds = new HashSet<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+                if (fields.length != 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+                    throw new IOException(file + ":" + lineNumber + " : expected device_id,pop");
+                }
+                if (!deviceIds.add(fields[0])) {
+                    throw new IOException(file + ":" + lineNumber + " : duplicate device id " + fields[0]);
+                }
+                devices.add(new SRP6BatchVerifierGenerator.Credentials(fields[0], userName, fields[1]));
+            }
+        } finally {
+            reader.close();
+        }
+        return devices;
+    }
+
+    /**
+     * Read ids of devices already written to output file by an earlier run.
+     * A last line which was not completely written is removed from the file.
+     */
+    static Set<String> readCompletedDeviceIds(File file) throws IOException {
+
+        Set<String> deviceIds = new HashSet<>();
+        if (!file.exists()) {
+            return deviceIds;
+        }
+
+        truncateIncompleteLine(file);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                if (line.isEmpty() || line.equals(HEADER)) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != 3) {
+                    throw new IOException(file + " : unexpected line " + line);
+                }
+                deviceIds.add(fields[0]);
+            }
+        } finally {
+            reader.close();
+        }
+        return deviceIds;
+    }
+
+    /**
+     * Open output file for appending, writing header if file is new.
+     *
+     * @param verifierLength Byte length verifiers are padded to.
+     */
+    static VerifierCsv openOutput(File file, int verifierLength) throws IOException {
+
+        boolean isNew = !file.exists() || file.length() == 0;
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+        VerifierCsv csv = new VerifierCsv(writer, verifierLength);
+        if (isNew) {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.flush();
+        }
+        return csv;
+    }
+
+    /**
+     * Write and flush a chunk of results, so that it is kept if the tool is interrupted.
+     */
+    @Override
+    public void write(List<SRP6BatchVerifierGenerator.Result> results) throws IOException {
+
+        StringBuilder builder = new StringBuilder();
+        for (SRP6BatchVerifierGenerator.Result result : results) {
+            builder.append(result.deviceID).append(',');
+            appendHex(builder, result.salt);
+            builder.append(',');
+            appendHex(builder, toPaddedBytes(result.verifier, verifierLength));
+            builder.append('\n');
+        }
+        writer.write(builder.toString());
+        writer.flush();
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    private static void truncateIncompleteLine(File file) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long length = raf.length();
+            long end = length;
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end != length) {
+                raf.setLength(end);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] toPaddedBytes(BigInteger value, int length) {
+
+        byte[] bytes = value.toByteArray();
+        int offset = bytes[0] == 0 ? 1 : 0;
+        int count = bytes.length - offset;
+        byte[] padded = new byte[Math.max(length, count)];
+        System.arraycopy(bytes, offset, padded, padded.length - count, count);
+        return padded;
+    }
+
+    private static void appendHex(StringBuilder builder, byte[] bytes) {
+
+        for (byte b : bytes) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.espressif.provisioning.tools;
+
+import com.espressif.provisioning.srp6a.SRP6BatchVerifierGenerator;
+import com.espressif.provisioning.srp6a.SRP6CryptoParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool generating Security 2 salt and verifier pairs for a batch of devices.
+ * See README.md for usage.
+ */
+public final class VerifierTool {
+
+    private static final String DEFAULT_USER_NAME = "wifiprov";
+
+    private VerifierTool() {
+    }
+
+    public static void main(String[] args) {
+
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) throws IOException {
+
+        File input = null;
+        File output = null;
+        String userName = DEFAULT_USER_NAME;
+        int saltLength = SRP6BatchVerifierGenerator.DEFAULT_SALT_LENGTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+
+            String option = args[i];
+            if (option.equals("--help")) {
+                printUsage();
+                return 0;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+
+            switch (option) {
+                case "--input":
+                    input = new File(value);
+                    break;
+                case "--output":
+                    output = new File(value);
+                    break;
+                case "--username":
+                    userName = value;
+                    break;
+                case "--salt-length":
+                    saltLength = parsePositive(option, value);
+                    break;
+                case "--threads":
+                    threads = parsePositive(option, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("Input and output files are required");
+        }
+
+        SRP6CryptoParams config = SRP6CryptoParams.getInstance(3072, "SHA-512");
+        List<SRP6BatchVerifierGenerator.Credentials> devices = VerifierCsv.readInput(input, userName);
+        Set<String> completed = VerifierCsv.readCompletedDeviceIds(output);
+        if (!completed.isEmpty()) {
+            System.out.println("Resuming, " + completed.size() + " devices already in " + output);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        VerifierCsv csv = VerifierCsv.openOutput(output, config.getPadLength());
+        try {
+            long start = System.nanoTime();
+            SRP6BatchVerifierGenerator generator = new SRP6BatchVerifierGenerator(config, pool, saltLength);
+            int count = generator.generate(devices.iterator(), completed, csv);
+            long elapsedMs = (System.nanoTime() - start) / 1000000;
+            System.out.println("Generated " + count + " verifiers in " + elapsedMs + " ms");
+        } finally {
+            csv.close();
+            pool.shutdown();
+        }
+        return 0;
+    }
+
+    private static int parsePositive(String option, String value) {
+
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid value of " + option + " : " + value);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage : srp-verifier --input <devices.csv> --output <verifiers.csv>"
+                + " [--username <name>] [--salt-length <bytes>] [--threads <count>]");
+    }
+}